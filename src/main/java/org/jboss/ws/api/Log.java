@@ -18,11 +18,13 @@
  */
 package org.jboss.ws.api;
 
+import static org.jboss.logging.Logger.Level.DEBUG;
 import static org.jboss.logging.Logger.Level.ERROR;
 import static org.jboss.logging.Logger.Level.TRACE;
 import static org.jboss.logging.Logger.Level.WARN;
 
 import org.jboss.logging.BasicLogger;
+import org.jboss.logging.annotations.Cause;
 import org.jboss.logging.annotations.LogMessage;
 import org.jboss.logging.annotations.Message;
 import org.jboss.logging.annotations.MessageLogger;
@@ -73,4 +75,36 @@ public interface Log extends BasicLogger
     @Message(id = 20015, value = "Could not get %s module classloader: %s")
     void couldNotGetModuleClassLoader(String module, Exception e);
     
+    @LogMessage(level = TRACE)
+    @Message(id = 20016, value = "Service index %s provides %s bindings")
+    void serviceIndexLoaded(String url, int count);
+    
+    @LogMessage(level = WARN)
+    @Message(id = 20017, value = "Cannot read service index %s")
+    void cannotReadServiceIndex(String url, @Cause Throwable cause);
+    
+    @LogMessage(level = TRACE)
+    @Message(id = 20018, value = "Prewarmed service %s in %s ns")
+    void prewarmedService(String propertyName, long time);
+    
+    @LogMessage(level = WARN)
+    @Message(id = 20019, value = "Cannot prewarm service %s")
+    void cannotPrewarmService(String propertyName, @Cause Throwable cause);
+    
+    @LogMessage(level = WARN)
+    @Message(id = 20020, value = "Cannot register MBean %s")
+    void cannotRegisterMBean(String name, @Cause Throwable cause);
+    
+    @LogMessage(level = DEBUG)
+    @Message(id = 20021, value = "Using %s, %s, %s and %s for classloader %s")
+    void usingXMLFactories(String documentBuilderFactory, String transformerFactory, String inputFactory, String parserFactory, ClassLoader loader);
+    
+    @LogMessage(level = WARN)
+    @Message(id = 20022, value = "Cannot enable secure processing on %s")
+    void cannotEnableSecureProcessing(String factory, @Cause Throwable cause);
+    
+    @LogMessage(level = WARN)
+    @Message(id = 20027, value = "Cannot unregister MBean %s")
+    void cannotUnregisterMBean(String name, @Cause Throwable cause);
+    
 }
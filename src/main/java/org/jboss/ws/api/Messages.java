@@ -53,4 +53,16 @@ public interface Messages {
     @Message(id = 20014, value = "Illegal transport guarantee: %s")
     IllegalArgumentException illegalTransportGuarantee(String method);
 
+    @Message(id = 20023, value = "Template %s requires %s values, got %s")
+    IllegalArgumentException illegalTemplateValues(String template, int expected, int actual);
+
+    @Message(id = 20024, value = "Invalid path expression: %s")
+    IllegalArgumentException invalidPathExpression(String path);
+
+    @Message(id = 20025, value = "Read-only node: %s")
+    String readOnlyNode(String nodeName);
+
+    @Message(id = 20026, value = "Parse aborted, %s limit of %s exceeded")
+    String parseLimitExceeded(String limit, long max);
+
 }
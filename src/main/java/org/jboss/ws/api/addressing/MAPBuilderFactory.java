@@ -55,13 +55,14 @@ public abstract class MAPBuilderFactory
    /**
     * The same as {@link #getInstance()} except the provided ClassLoader instance
     * is used to lookup the factory name.
+    * Factories are stateless, hence the same instance is returned for a given resolved implementation.
     * 
     * @param loader the classloader instance to use
     * @return a {@link org.jboss.ws.api.addressing.MAPBuilderFactory} instance
     */
    public static MAPBuilderFactory getInstance(ClassLoader loader)
    {
-      return (MAPBuilderFactory)ServiceLoader.loadService(MAPBuilderFactory.class.getName(), null, loader);
+      return (MAPBuilderFactory)ServiceLoader.loadSharedService(MAPBuilderFactory.class.getName(), null, loader);
    }
    
    /**
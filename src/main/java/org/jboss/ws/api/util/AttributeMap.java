@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A read-only, lazy {@link Map} view over the attributes of an element, with the same keys as
+ * {@link DOMUtils#getAttributes(Element)}; attribute names are resolved into QNames only when accessed
+ * and the resolved names are kept, indexed by attribute position. Values are not copied, they are read from
+ * the element on each access; as names are indexed by position, the set of attributes of the element is
+ * expected not to change while the view is in use.
+ */
+final class AttributeMap extends AbstractMap<QName, String>
+{
+   private final Element element;
+   private final NamedNodeMap attribs;
+   private final QName[] names;
+   private NamespaceContextResolver resolver;
+   private Set<Map.Entry<QName, String>> entrySet;
+
+   AttributeMap(Element element)
+   {
+      this.element = element;
+      this.attribs = element.getAttributes();
+      this.names = new QName[attribs.getLength()];
+   }
+
+   @Override
+   public int size()
+   {
+      return names.length;
+   }
+
+   @Override
+   public boolean containsKey(Object key)
+   {
+      return indexOf(key) >= 0;
+   }
+
+   @Override
+   public String get(Object key)
+   {
+      int i = indexOf(key);
+      return i >= 0 ? attribs.item(i).getNodeValue() : null;
+   }
+
+   @Override
+   public Set<Map.Entry<QName, String>> entrySet()
+   {
+      if (entrySet == null)
+      {
+         entrySet = new AbstractSet<Map.Entry<QName, String>>()
+         {
+            @Override
+            public Iterator<Map.Entry<QName, String>> iterator()
+            {
+               return new Iterator<Map.Entry<QName, String>>()
+               {
+                  private int next;
+
+                  public boolean hasNext()
+                  {
+                     return next < names.length;
+                  }
+
+                  public Map.Entry<QName, String> next()
+                  {
+                     if (next >= names.length)
+                        throw new NoSuchElementException();
+                     int i = next++;
+                     return new AbstractMap.SimpleImmutableEntry<QName, String>(getName(i), attribs.item(i).getNodeValue());
+                  }
+               };
+            }
+
+            @Override
+            public int size()
+            {
+               return names.length;
+            }
+         };
+      }
+      return entrySet;
+   }
+
+   private int indexOf(Object key)
+   {
+      if (!(key instanceof QName))
+         return -1;
+      QName qname = (QName) key;
+      String localPart = qname.getLocalPart();
+      for (int i = 0; i < names.length; i++)
+      {
+         // only resolve the names of the attributes with a matching local part
+         if (names[i] != null ? names[i].equals(qname) : hasLocalPart(attribs.item(i), localPart) && getName(i).equals(qname))
+            return i;
+      }
+      return -1;
+   }
+
+   private QName getName(int i)
+   {
+      QName name = names[i];
+      if (name == null)
+      {
+         if (resolver == null)
+            resolver = new NamespaceContextResolver();
+         name = resolver.resolveQName(element, attribs.item(i).getNodeName());
+         names[i] = name;
+      }
+      return name;
+   }
+
+   private static boolean hasLocalPart(Node attr, String localPart)
+   {
+      String name = attr.getNodeName();
+      int prefixLength = name.length() - localPart.length();
+      return name.endsWith(localPart) && (prefixLength == 0 || (prefixLength > 1 && name.charAt(prefixLength - 1) == ':'));
+   }
+}
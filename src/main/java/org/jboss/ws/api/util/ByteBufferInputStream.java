@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} over the remaining content of a (heap, direct or mapped) {@link ByteBuffer},
+ * reading the bytes in place; the position of the provided buffer is not modified.
+ */
+final class ByteBufferInputStream extends InputStream
+{
+   private final ByteBuffer buffer;
+
+   ByteBufferInputStream(ByteBuffer buffer)
+   {
+      this.buffer = buffer.duplicate();
+   }
+
+   @Override
+   public int read()
+   {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len)
+   {
+      if (len == 0)
+         return 0;
+      if (!buffer.hasRemaining())
+         return -1;
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+   }
+
+   @Override
+   public long skip(long n)
+   {
+      int skipped = (int) Math.min(Math.max(n, 0), buffer.remaining());
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+   }
+
+   @Override
+   public int available()
+   {
+      return buffer.remaining();
+   }
+}
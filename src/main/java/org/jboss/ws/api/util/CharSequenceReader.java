@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.io.Reader;
+
+/**
+ * A {@link Reader} over a {@link CharSequence}, reading the characters in place
+ * (no copy of the whole sequence is performed).
+ */
+final class CharSequenceReader extends Reader
+{
+   private final CharSequence chars;
+   private int pos;
+   private int mark;
+
+   CharSequenceReader(CharSequence chars)
+   {
+      this.chars = chars;
+   }
+
+   @Override
+   public int read()
+   {
+      return pos < chars.length() ? chars.charAt(pos++) : -1;
+   }
+
+   @Override
+   public int read(char[] cbuf, int off, int len)
+   {
+      int length = chars.length();
+      if (pos >= length)
+         return -1;
+      int n = Math.min(len, length - pos);
+      if (chars instanceof String)
+      {
+         ((String) chars).getChars(pos, pos + n, cbuf, off);
+      }
+      else
+      {
+         for (int i = 0; i < n; i++)
+         {
+            cbuf[off + i] = chars.charAt(pos + i);
+         }
+      }
+      pos += n;
+      return n;
+   }
+
+   @Override
+   public long skip(long n)
+   {
+      int skipped = (int) Math.min(Math.max(n, 0), chars.length() - pos);
+      pos += skipped;
+      return skipped;
+   }
+
+   @Override
+   public boolean ready()
+   {
+      return true;
+   }
+
+   @Override
+   public boolean markSupported()
+   {
+      return true;
+   }
+
+   @Override
+   public void mark(int readAheadLimit)
+   {
+      mark = pos;
+   }
+
+   @Override
+   public void reset()
+   {
+      pos = mark;
+   }
+
+   @Override
+   public void close()
+   {
+      // nothing to release
+   }
+}
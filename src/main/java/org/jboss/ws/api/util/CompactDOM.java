@@ -0,0 +1,1802 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.jboss.ws.api.Messages.MESSAGES;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+import org.w3c.dom.TypeInfo;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * A compact, read-only DOM tree for inspection-only workloads. The tree is stored in parallel arrays indexed by
+ * node number (in document order, the document itself being node 0), links to parents and siblings being stored as
+ * short distances; names are interned and shared through a per-document name table, while text, comments and
+ * attribute values are offsets into a single shared character buffer, holding Latin-1 bytes when possible.
+ * The {@link Node} instances are lightweight views created on first access, and then reused.
+ * Any modification attempt fails with a {@link DOMException}; nodes can be imported into regular documents.
+ * Like other DOM implementations, trees are not safe for concurrent use.
+ */
+final class CompactDOM
+{
+   private static final int NONE = -1;
+   private static final short[] TYPES = {Node.DOCUMENT_NODE, Node.ELEMENT_NODE, Node.TEXT_NODE, Node.CDATA_SECTION_NODE,
+         Node.COMMENT_NODE, Node.PROCESSING_INSTRUCTION_NODE};
+   /** the bits of the type code in the packed values */
+   private static final int TYPE_SHIFT = 13;
+   private static final int PAGE_SHIFT = 8;
+   private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+   private static final String XMLNS_PREFIX = XMLConstants.XMLNS_ATTRIBUTE;
+   private static final String XMLNS_URI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+   // nodes
+   private final int count;
+   /** the distance to the parent node, 0 for none */
+   private final PackedInts parentDistances;
+   /** the distance to the next sibling node, 0 for none */
+   private final PackedInts siblingDistances;
+   /** the type code (as tag) and the name of elements, the text length of character data */
+   private final PackedInts values;
+   /** the number of attributes of elements, 0 for other nodes */
+   private final PackedInts attrCounts;
+   /** the first attribute of elements, the text offset of character data, the index of processing instructions */
+   private final int[] offsets;
+   /** the target and data of the processing instructions, in pairs */
+   private final String[] instructions;
+
+   // attributes
+   private final int[] attrNames;
+   private final int[] attrOffsets;
+   private final int[] attrLengths;
+
+   // names
+   private final String[] namespaceURIs;
+   private final String[] localNames;
+   private final String[] prefixes;
+   private final String[] qualifiedNames;
+
+   /** the text, as Latin-1 bytes when possible (like compact strings) or as chars otherwise */
+   private final byte[] latin1;
+   private final char[] chars;
+   private final String xmlVersion;
+   private final String xmlEncoding;
+   private final boolean xmlStandalone;
+
+   /** the views created so far, in pages allocated on demand */
+   private final Node[][] nodes;
+   private final Attr[][] attrs;
+
+   private CompactDOM(Builder builder)
+   {
+      this.count = builder.count;
+      int[] distances = new int[count];
+      byte[] typeCodes = new byte[count];
+      for (int n = 0; n < count; n++)
+      {
+         distances[n] = builder.parents[n] == NONE ? 0 : n - builder.parents[n];
+         typeCodes[n] = typeCode(builder.types[n]);
+      }
+      this.parentDistances = new PackedInts(distances, null, count, Character.SIZE);
+      for (int n = 0; n < count; n++)
+         distances[n] = builder.nextSiblings[n] == NONE ? 0 : builder.nextSiblings[n] - n;
+      this.siblingDistances = new PackedInts(distances, null, count, Character.SIZE);
+      this.values = new PackedInts(builder.values, typeCodes, count, TYPE_SHIFT);
+      //the attributes of an element end where those of the next element start
+      for (int n = count - 1, end = builder.attrCount; n >= 0; n--)
+      {
+         if (builder.types[n] == Node.ELEMENT_NODE)
+         {
+            distances[n] = end - builder.offsets[n];
+            end = builder.offsets[n];
+         }
+         else
+         {
+            distances[n] = 0;
+         }
+      }
+      this.attrCounts = new PackedInts(distances, null, count, Character.SIZE);
+      this.offsets = Arrays.copyOf(builder.offsets, count);
+      this.instructions = Arrays.copyOf(builder.instructions, builder.instructionCount * 2);
+      this.attrNames = Arrays.copyOf(builder.attrNames, builder.attrCount);
+      this.attrOffsets = Arrays.copyOf(builder.attrOffsets, builder.attrCount);
+      this.attrLengths = Arrays.copyOf(builder.attrLengths, builder.attrCount);
+      this.namespaceURIs = Arrays.copyOf(builder.namespaceURIs, builder.nameCount);
+      this.localNames = Arrays.copyOf(builder.localNames, builder.nameCount);
+      this.prefixes = Arrays.copyOf(builder.prefixes, builder.nameCount);
+      this.qualifiedNames = Arrays.copyOf(builder.qualifiedNames, builder.nameCount);
+      this.latin1 = toLatin1(builder.chars, builder.charCount);
+      this.chars = latin1 == null ? Arrays.copyOf(builder.chars, builder.charCount) : null;
+      this.xmlVersion = builder.xmlVersion;
+      this.xmlEncoding = builder.xmlEncoding;
+      this.xmlStandalone = builder.xmlStandalone;
+      this.nodes = new Node[(count + PAGE_SIZE - 1) >>> PAGE_SHIFT][];
+      this.attrs = new Attr[(attrNames.length + PAGE_SIZE - 1) >>> PAGE_SHIFT][];
+   }
+
+   /**
+    * Build a tree from the given reader, which is consumed up to the end of the document but not closed
+    *
+    * @param reader  a namespace-aware reader positioned at the start of the document
+    * @return  the document
+    * @throws XMLStreamException  if the input is not well-formed
+    */
+   static Document build(XMLStreamReader reader) throws XMLStreamException
+   {
+      Builder builder = new Builder(reader);
+      builder.build();
+      return (Document) new CompactDOM(builder).node(0);
+   }
+
+   Node node(int id)
+   {
+      if (id == NONE)
+         return null;
+      Node[] page = nodes[id >>> PAGE_SHIFT];
+      if (page == null)
+         page = nodes[id >>> PAGE_SHIFT] = new Node[PAGE_SIZE];
+      Node node = page[id & (PAGE_SIZE - 1)];
+      if (node == null)
+      {
+         switch (type(id))
+         {
+            case Node.DOCUMENT_NODE :
+               node = new DocumentImpl(this);
+               break;
+            case Node.ELEMENT_NODE :
+               node = new ElementImpl(this, id);
+               break;
+            case Node.TEXT_NODE :
+               node = new TextImpl(this, id);
+               break;
+            case Node.CDATA_SECTION_NODE :
+               node = new CDATASectionImpl(this, id);
+               break;
+            case Node.COMMENT_NODE :
+               node = new CommentImpl(this, id);
+               break;
+            default :
+               node = new ProcessingInstructionImpl(this, id);
+         }
+         page[id & (PAGE_SIZE - 1)] = node;
+      }
+      return node;
+   }
+
+   Attr attr(int element, int index)
+   {
+      int attr = offsets[element] + index;
+      Attr[] page = attrs[attr >>> PAGE_SHIFT];
+      if (page == null)
+         page = attrs[attr >>> PAGE_SHIFT] = new Attr[PAGE_SIZE];
+      Attr node = page[attr & (PAGE_SIZE - 1)];
+      if (node == null)
+      {
+         node = new AttrImpl(this, attr, element);
+         page[attr & (PAGE_SIZE - 1)] = node;
+      }
+      return node;
+   }
+
+   private static byte[] toLatin1(char[] chars, int length)
+   {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++)
+      {
+         char c = chars[i];
+         if (c > 0xFF)
+            return null;
+         bytes[i] = (byte) c;
+      }
+      return bytes;
+   }
+
+   private String string(int offset, int length)
+   {
+      return latin1 != null ? new String(latin1, offset, length, StandardCharsets.ISO_8859_1) : new String(chars, offset, length);
+   }
+
+   private char charAt(int index)
+   {
+      return latin1 != null ? (char) (latin1[index] & 0xFF) : chars[index];
+   }
+
+   private String text(int id)
+   {
+      return string(offsets[id], value(id));
+   }
+
+   /**
+    * @return  the end (exclusive) of the attributes of the given element
+    */
+   private int attrEnd(int element)
+   {
+      return offsets[element] + attrCounts.get(element);
+   }
+
+   private String attrValue(int attr)
+   {
+      return string(attrOffsets[attr], attrLengths[attr]);
+   }
+
+   private static byte typeCode(short type)
+   {
+      byte code = 0;
+      while (TYPES[code] != type)
+         code++;
+      return code;
+   }
+
+   private short type(int id)
+   {
+      return TYPES[values.tag(id)];
+   }
+
+   private int value(int id)
+   {
+      return values.get(id);
+   }
+
+   private int parent(int id)
+   {
+      int distance = parentDistances.get(id);
+      return distance == 0 ? NONE : id - distance;
+   }
+
+   private int nextSibling(int id)
+   {
+      int distance = siblingDistances.get(id);
+      return distance == 0 ? NONE : id + distance;
+   }
+
+   /**
+    * @return  the first child of the given node: as nodes are numbered in document order, the following node
+    * if it is a child
+    */
+   private int firstChild(int id)
+   {
+      int next = id + 1;
+      return next < count && parent(next) == id ? next : NONE;
+   }
+
+   private boolean attrValueEquals(int attr, String value)
+   {
+      int length = attrLengths[attr];
+      if (length != value.length())
+         return false;
+      for (int i = 0, offset = attrOffsets[attr]; i < length; i++)
+      {
+         if (charAt(offset + i) != value.charAt(i))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * @return  the node following the subtree rooted at the given node, i.e. the end (exclusive) of its
+    * node number range
+    */
+   private int subtreeEnd(int id)
+   {
+      for (int n = id; n != NONE; n = parent(n))
+      {
+         int next = nextSibling(n);
+         if (next != NONE)
+            return next;
+      }
+      return count;
+   }
+
+   private int findAttr(int element, String namespaceURI, String localName)
+   {
+      for (int a = offsets[element], end = attrEnd(element); a < end; a++)
+      {
+         int name = attrNames[a];
+         if (localName.equals(localNames[name]) && equals(namespaceURI, namespaceURIs[name]))
+            return a - offsets[element];
+      }
+      return NONE;
+   }
+
+   private int findAttr(int element, String qualifiedName)
+   {
+      for (int a = offsets[element], end = attrEnd(element); a < end; a++)
+      {
+         if (qualifiedName.equals(qualifiedNames[attrNames[a]]))
+            return a - offsets[element];
+      }
+      return NONE;
+   }
+
+   private String lookupNamespaceURI(int element, String prefix)
+   {
+      for (int e = element; e > 0; e = parent(e))
+      {
+         int name = value(e);
+         if (namespaceURIs[name] != null && equals(prefix, prefixes[name]))
+            return namespaceURIs[name];
+         for (int a = offsets[e], end = attrEnd(e); a < end; a++)
+         {
+            int attrName = attrNames[a];
+            if (XMLNS_URI.equals(namespaceURIs[attrName]))
+            {
+               boolean match = prefix == null ? prefixes[attrName] == null : prefix.equals(localNames[attrName]) && prefixes[attrName] != null;
+               if (match)
+                  return attrLengths[a] > 0 ? attrValue(a) : null;
+            }
+         }
+      }
+      return null;
+   }
+
+   private String lookupPrefix(int element, String namespaceURI)
+   {
+      if (namespaceURI == null)
+         return null;
+      for (int e = element; e > 0; e = parent(e))
+      {
+         int name = value(e);
+         if (namespaceURI.equals(namespaceURIs[name]) && prefixes[name] != null)
+            return prefixes[name];
+         for (int a = offsets[e], end = attrEnd(e); a < end; a++)
+         {
+            int attrName = attrNames[a];
+            if (XMLNS_URI.equals(namespaceURIs[attrName]) && prefixes[attrName] != null && attrValueEquals(a, namespaceURI))
+               return localNames[attrName];
+         }
+      }
+      return null;
+   }
+
+   private NodeList getElementsByTagName(int root, String namespaceURI, String localName, boolean qualified)
+   {
+      int[] matches = new int[8];
+      int size = 0;
+      for (int n = root + 1, end = subtreeEnd(root); n < end; n++)
+      {
+         if (type(n) != Node.ELEMENT_NODE)
+            continue;
+         int name = value(n);
+         boolean match;
+         if (qualified)
+            match = "*".equals(localName) || localName.equals(qualifiedNames[name]);
+         else
+            match = ("*".equals(namespaceURI) || equals(namespaceURI, namespaceURIs[name])) && ("*".equals(localName) || localName.equals(localNames[name]));
+         if (match)
+         {
+            if (size == matches.length)
+               matches = Arrays.copyOf(matches, size * 2);
+            matches[size++] = n;
+         }
+      }
+      return new ElementList(this, matches, size);
+   }
+
+   private static boolean equals(String a, String b)
+   {
+      return a == null ? b == null : a.equals(b);
+   }
+
+   private static DOMException readOnly(Node node)
+   {
+      return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, MESSAGES.readOnlyNode(node.getNodeName()));
+   }
+
+   /**
+    * Collects the tree from a stream reader into growable arrays
+    */
+   private static final class Builder
+   {
+      private final XMLStreamReader reader;
+
+      int count;
+      byte[] types = new byte[64];
+      int[] parents = new int[64];
+      int[] nextSiblings = new int[64];
+      int[] values = new int[64];
+      int[] offsets = new int[64];
+
+      int instructionCount;
+      String[] instructions = new String[4];
+
+      int attrCount;
+      int[] attrNames = new int[16];
+      int[] attrOffsets = new int[16];
+      int[] attrLengths = new int[16];
+
+      int nameCount;
+      String[] namespaceURIs = new String[16];
+      String[] localNames = new String[16];
+      String[] prefixes = new String[16];
+      String[] qualifiedNames = new String[16];
+      /** the next name with the same local name, for the lookups through nameIndex */
+      int[] nameNext = new int[16];
+      private final Map<String, Integer> nameIndex = new HashMap<String, Integer>();
+
+      int charCount;
+      char[] chars = new char[1024];
+
+      String xmlVersion;
+      String xmlEncoding;
+      boolean xmlStandalone;
+
+      /** the open nodes, and the last child added to each */
+      private int[] open = new int[16];
+      private int[] lastChildren = new int[16];
+      private int depth;
+
+      Builder(XMLStreamReader reader)
+      {
+         this.reader = reader;
+      }
+
+      void build() throws XMLStreamException
+      {
+         xmlVersion = reader.getVersion();
+         xmlEncoding = reader.getCharacterEncodingScheme();
+         xmlStandalone = reader.isStandalone();
+         open[0] = addNode(Node.DOCUMENT_NODE, NONE);
+         lastChildren[0] = NONE;
+         depth = 1;
+         while (reader.hasNext())
+         {
+            switch (reader.next())
+            {
+               case XMLStreamConstants.START_ELEMENT :
+                  startElement();
+                  break;
+               case XMLStreamConstants.END_ELEMENT :
+                  depth--;
+                  break;
+               case XMLStreamConstants.CHARACTERS :
+               case XMLStreamConstants.SPACE :
+                  if (depth > 1)
+                     characters(Node.TEXT_NODE, true);
+                  break;
+               case XMLStreamConstants.CDATA :
+                  if (depth > 1)
+                     characters(Node.CDATA_SECTION_NODE, false);
+                  break;
+               case XMLStreamConstants.COMMENT :
+                  characters(Node.COMMENT_NODE, false);
+                  break;
+               case XMLStreamConstants.PROCESSING_INSTRUCTION :
+                  processingInstruction();
+                  break;
+               default :
+                  //doctype, entity declarations and the document end carry no content
+            }
+         }
+      }
+
+      private void startElement()
+      {
+         int id = addNode(Node.ELEMENT_NODE, open[depth - 1]);
+         values[id] = name(reader.getNamespaceURI(), reader.getLocalName(), reader.getPrefix());
+         offsets[id] = attrCount;
+         for (int i = 0, n = reader.getNamespaceCount(); i < n; i++)
+         {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+            boolean defaultNamespace = prefix == null || prefix.length() == 0;
+            addAttr(defaultNamespace ? name(XMLNS_URI, XMLNS_PREFIX, null) : name(XMLNS_URI, prefix, XMLNS_PREFIX), uri != null ? uri : "");
+         }
+         for (int i = 0, n = reader.getAttributeCount(); i < n; i++)
+         {
+            addAttr(name(reader.getAttributeNamespace(i), reader.getAttributeLocalName(i), reader.getAttributePrefix(i)), reader.getAttributeValue(i));
+         }
+         sortAttrs(offsets[id], attrCount);
+         if (depth == open.length)
+         {
+            open = Arrays.copyOf(open, depth * 2);
+            lastChildren = Arrays.copyOf(lastChildren, depth * 2);
+         }
+         open[depth] = id;
+         lastChildren[depth] = NONE;
+         depth++;
+      }
+
+      /**
+       * Sort the given attribute range by qualified name, the order regular DOM implementations use
+       */
+      private void sortAttrs(int from, int to)
+      {
+         for (int i = from + 1; i < to; i++)
+         {
+            int name = attrNames[i];
+            int offset = attrOffsets[i];
+            int length = attrLengths[i];
+            int j = i - 1;
+            for (; j >= from && qualifiedNames[attrNames[j]].compareTo(qualifiedNames[name]) > 0; j--)
+            {
+               attrNames[j + 1] = attrNames[j];
+               attrOffsets[j + 1] = attrOffsets[j];
+               attrLengths[j + 1] = attrLengths[j];
+            }
+            attrNames[j + 1] = name;
+            attrOffsets[j + 1] = offset;
+            attrLengths[j + 1] = length;
+         }
+      }
+
+      private void characters(short type, boolean merge)
+      {
+         int last = lastChildren[depth - 1];
+         //adjacent character events make up a single text node, as their characters are contiguous
+         if (merge && last == count - 1 && types[last] == Node.TEXT_NODE)
+         {
+            values[last] += append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            return;
+         }
+         int id = addNode(type, open[depth - 1]);
+         offsets[id] = charCount;
+         values[id] = append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+      }
+
+      private void processingInstruction()
+      {
+         int id = addNode(Node.PROCESSING_INSTRUCTION_NODE, open[depth - 1]);
+         if (instructionCount * 2 == instructions.length)
+            instructions = Arrays.copyOf(instructions, instructions.length * 2);
+         instructions[instructionCount * 2] = reader.getPITarget();
+         instructions[instructionCount * 2 + 1] = reader.getPIData();
+         offsets[id] = instructionCount++;
+      }
+
+      private int addNode(short type, int parent)
+      {
+         if (count == types.length)
+         {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            values = Arrays.copyOf(values, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+         }
+         int id = count++;
+         types[id] = (byte) type;
+         parents[id] = parent;
+         nextSiblings[id] = NONE;
+         if (parent != NONE)
+         {
+            int last = lastChildren[depth - 1];
+            if (last != NONE)
+               nextSiblings[last] = id;
+            lastChildren[depth - 1] = id;
+         }
+         return id;
+      }
+
+      private void addAttr(int name, String value)
+      {
+         if (attrCount == attrNames.length)
+         {
+            int capacity = attrCount * 2;
+            attrNames = Arrays.copyOf(attrNames, capacity);
+            attrOffsets = Arrays.copyOf(attrOffsets, capacity);
+            attrLengths = Arrays.copyOf(attrLengths, capacity);
+         }
+         attrNames[attrCount] = name;
+         attrOffsets[attrCount] = charCount;
+         attrLengths[attrCount] = append(value);
+         attrCount++;
+      }
+
+      private int append(String s)
+      {
+         int length = s.length();
+         ensureChars(length);
+         s.getChars(0, length, chars, charCount);
+         charCount += length;
+         return length;
+      }
+
+      private int append(char[] source, int start, int length)
+      {
+         ensureChars(length);
+         System.arraycopy(source, start, chars, charCount, length);
+         charCount += length;
+         return length;
+      }
+
+      private void ensureChars(int length)
+      {
+         if (charCount + length > chars.length)
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+      }
+
+      /**
+       * Get the number of the given name, adding it to the name table if needed
+       */
+      private int name(String namespaceURI, String localName, String prefix)
+      {
+         if (namespaceURI != null && namespaceURI.length() == 0)
+            namespaceURI = null;
+         if (prefix != null && prefix.length() == 0)
+            prefix = null;
+         Integer first = nameIndex.get(localName);
+         for (int n = first != null ? first : NONE; n != NONE; n = nameNext[n])
+         {
+            if (CompactDOM.equals(namespaceURI, namespaceURIs[n]) && CompactDOM.equals(prefix, prefixes[n]))
+               return n;
+         }
+         if (nameCount == localNames.length)
+         {
+            int capacity = nameCount * 2;
+            namespaceURIs = Arrays.copyOf(namespaceURIs, capacity);
+            localNames = Arrays.copyOf(localNames, capacity);
+            prefixes = Arrays.copyOf(prefixes, capacity);
+            qualifiedNames = Arrays.copyOf(qualifiedNames, capacity);
+            nameNext = Arrays.copyOf(nameNext, capacity);
+         }
+         int n = nameCount++;
+         namespaceURIs[n] = namespaceURI != null ? namespaceURI.intern() : null;
+         localNames[n] = localName.intern();
+         prefixes[n] = prefix != null ? prefix.intern() : null;
+         qualifiedNames[n] = prefix != null ? (prefix + ":" + localName).intern() : localNames[n];
+         nameNext[n] = first != null ? first : NONE;
+         nameIndex.put(localNames[n], n);
+         return n;
+      }
+   }
+
+   /**
+    * Non-negative ints stored as chars, along with an optional tag in their high bits; the values that do
+    * not fit are kept in a side table, by index
+    */
+   private static final class PackedInts
+   {
+      private final char[] packed;
+      private final int valueBits;
+      /** the value marking the entries kept in the side table */
+      private final int far;
+      private final int[] farIndexes;
+      private final int[] farValues;
+
+      PackedInts(int[] values, byte[] tags, int count, int valueBits)
+      {
+         this.packed = new char[count];
+         this.valueBits = valueBits;
+         this.far = (1 << valueBits) - 1;
+         int[] indexes = new int[0];
+         int[] farValues = new int[0];
+         int farCount = 0;
+         for (int i = 0; i < count; i++)
+         {
+            int value = values[i];
+            if (value >= far)
+            {
+               if (farCount == indexes.length)
+               {
+                  indexes = Arrays.copyOf(indexes, Math.max(16, farCount * 2));
+                  farValues = Arrays.copyOf(farValues, indexes.length);
+               }
+               indexes[farCount] = i;
+               farValues[farCount++] = value;
+               value = far;
+            }
+            packed[i] = (char) ((tags != null ? tags[i] << valueBits : 0) | value);
+         }
+         this.farIndexes = Arrays.copyOf(indexes, farCount);
+         this.farValues = Arrays.copyOf(farValues, farCount);
+      }
+
+      int get(int index)
+      {
+         int value = packed[index] & far;
+         return value != far ? value : farValues[Arrays.binarySearch(farIndexes, index)];
+      }
+
+      int tag(int index)
+      {
+         return packed[index] >>> valueBits;
+      }
+   }
+
+   /**
+    * The base view of a node of the tree
+    */
+   private abstract static class NodeImpl implements Node
+   {
+      final CompactDOM dom;
+      final int id;
+
+      NodeImpl(CompactDOM dom, int id)
+      {
+         this.dom = dom;
+         this.id = id;
+      }
+
+      public Node getParentNode()
+      {
+         return dom.node(dom.parent(id));
+      }
+
+      public NodeList getChildNodes()
+      {
+         return new ChildList(dom, id);
+      }
+
+      public Node getFirstChild()
+      {
+         return dom.node(dom.firstChild(id));
+      }
+
+      public Node getLastChild()
+      {
+         int last = NONE;
+         for (int n = dom.firstChild(id); n != NONE; n = dom.nextSibling(n))
+            last = n;
+         return dom.node(last);
+      }
+
+      public Node getPreviousSibling()
+      {
+         int parent = dom.parent(id);
+         if (parent == NONE)
+            return null;
+         int previous = NONE;
+         for (int n = dom.firstChild(parent); n != id; n = dom.nextSibling(n))
+            previous = n;
+         return dom.node(previous);
+      }
+
+      public Node getNextSibling()
+      {
+         return dom.node(dom.nextSibling(id));
+      }
+
+      public boolean hasChildNodes()
+      {
+         return dom.firstChild(id) != NONE;
+      }
+
+      public NamedNodeMap getAttributes()
+      {
+         return null;
+      }
+
+      public boolean hasAttributes()
+      {
+         return false;
+      }
+
+      public Document getOwnerDocument()
+      {
+         return (Document) dom.node(0);
+      }
+
+      public String getNodeValue()
+      {
+         return null;
+      }
+
+      public String getNamespaceURI()
+      {
+         return null;
+      }
+
+      public String getPrefix()
+      {
+         return null;
+      }
+
+      public String getLocalName()
+      {
+         return null;
+      }
+
+      public String getBaseURI()
+      {
+         return null;
+      }
+
+      public String getTextContent()
+      {
+         return getNodeValue();
+      }
+
+      /**
+       * @return  the element whose namespace declarations are in scope for this node
+       */
+      int scopeElement()
+      {
+         int parent = dom.parent(id);
+         return parent > 0 ? parent : NONE;
+      }
+
+      public String lookupPrefix(String namespaceURI)
+      {
+         int element = scopeElement();
+         return element != NONE ? dom.lookupPrefix(element, namespaceURI) : null;
+      }
+
+      public boolean isDefaultNamespace(String namespaceURI)
+      {
+         return CompactDOM.equals(namespaceURI, lookupNamespaceURI(null));
+      }
+
+      public String lookupNamespaceURI(String prefix)
+      {
+         int element = scopeElement();
+         return element != NONE ? dom.lookupNamespaceURI(element, prefix) : null;
+      }
+
+      /**
+       * @return  the position of this node in document order, attributes following their owner element
+       */
+      long position()
+      {
+         return (long) id << 32;
+      }
+
+      public short compareDocumentPosition(Node other)
+      {
+         if (other == this)
+            return 0;
+         if (!(other instanceof NodeImpl) || ((NodeImpl) other).dom != dom)
+         {
+            return (short) (DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+                  | (System.identityHashCode(other) < System.identityHashCode(this) ? DOCUMENT_POSITION_PRECEDING : DOCUMENT_POSITION_FOLLOWING));
+         }
+         NodeImpl node = (NodeImpl) other;
+         if (node.getNodeType() != ATTRIBUTE_NODE && getNodeType() != ATTRIBUTE_NODE)
+         {
+            if (node.id < id && id < dom.subtreeEnd(node.id))
+               return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+            if (id < node.id && node.id < dom.subtreeEnd(id))
+               return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+         }
+         return node.position() < position() ? DOCUMENT_POSITION_PRECEDING : DOCUMENT_POSITION_FOLLOWING;
+      }
+
+      public boolean isSameNode(Node other)
+      {
+         return other == this;
+      }
+
+      public boolean isEqualNode(Node other)
+      {
+         if (other == this)
+            return true;
+         if (other == null || other.getNodeType() != getNodeType() || !CompactDOM.equals(getNodeName(), other.getNodeName())
+               || !CompactDOM.equals(getLocalName(), other.getLocalName()) || !CompactDOM.equals(getNamespaceURI(), other.getNamespaceURI())
+               || !CompactDOM.equals(getPrefix(), other.getPrefix()) || !CompactDOM.equals(getNodeValue(), other.getNodeValue()))
+            return false;
+         NamedNodeMap attributes = getAttributes();
+         NamedNodeMap otherAttributes = other.getAttributes();
+         if (attributes != null)
+         {
+            if (otherAttributes == null || attributes.getLength() != otherAttributes.getLength())
+               return false;
+            for (int i = 0; i < attributes.getLength(); i++)
+            {
+               Node attr = attributes.item(i);
+               Node otherAttr = attr.getLocalName() != null ? otherAttributes.getNamedItemNS(attr.getNamespaceURI(), attr.getLocalName())
+                     : otherAttributes.getNamedItem(attr.getNodeName());
+               if (!attr.isEqualNode(otherAttr))
+                  return false;
+            }
+         }
+         Node child = getFirstChild();
+         Node otherChild = other.getFirstChild();
+         while (child != null && otherChild != null)
+         {
+            if (!child.isEqualNode(otherChild))
+               return false;
+            child = child.getNextSibling();
+            otherChild = otherChild.getNextSibling();
+         }
+         return child == null && otherChild == null;
+      }
+
+      public Object getFeature(String feature, String version)
+      {
+         return null;
+      }
+
+      public boolean isSupported(String feature, String version)
+      {
+         return false;
+      }
+
+      public Object getUserData(String key)
+      {
+         return null;
+      }
+
+      public Object setUserData(String key, Object data, UserDataHandler handler)
+      {
+         throw readOnly(this);
+      }
+
+      public void setNodeValue(String nodeValue)
+      {
+         throw readOnly(this);
+      }
+
+      public void setPrefix(String prefix)
+      {
+         throw readOnly(this);
+      }
+
+      public void setTextContent(String textContent)
+      {
+         throw readOnly(this);
+      }
+
+      public Node insertBefore(Node newChild, Node refChild)
+      {
+         throw readOnly(this);
+      }
+
+      public Node replaceChild(Node newChild, Node oldChild)
+      {
+         throw readOnly(this);
+      }
+
+      public Node removeChild(Node oldChild)
+      {
+         throw readOnly(this);
+      }
+
+      public Node appendChild(Node newChild)
+      {
+         throw readOnly(this);
+      }
+
+      public Node cloneNode(boolean deep)
+      {
+         //copies are obtained by importing into a regular document
+         throw new DOMException(DOMException.NOT_SUPPORTED_ERR, MESSAGES.readOnlyNode(getNodeName()));
+      }
+
+      public void normalize()
+      {
+         //adjacent text is merged while building
+      }
+
+      public String toString()
+      {
+         return "[" + getNodeName() + ": " + getNodeValue() + "]";
+      }
+   }
+
+   private static final class DocumentImpl extends NodeImpl implements Document
+   {
+      DocumentImpl(CompactDOM dom)
+      {
+         super(dom, 0);
+      }
+
+      public short getNodeType()
+      {
+         return DOCUMENT_NODE;
+      }
+
+      public String getNodeName()
+      {
+         return "#document";
+      }
+
+      public Document getOwnerDocument()
+      {
+         return null;
+      }
+
+      public String getTextContent()
+      {
+         return null;
+      }
+
+      int scopeElement()
+      {
+         Element root = getDocumentElement();
+         return root != null ? ((NodeImpl) root).id : NONE;
+      }
+
+      public Element getDocumentElement()
+      {
+         for (int n = dom.firstChild(0); n != NONE; n = dom.nextSibling(n))
+         {
+            if (dom.type(n) == ELEMENT_NODE)
+               return (Element) dom.node(n);
+         }
+         return null;
+      }
+
+      public NodeList getElementsByTagName(String tagname)
+      {
+         return dom.getElementsByTagName(0, null, tagname, true);
+      }
+
+      public NodeList getElementsByTagNameNS(String namespaceURI, String localName)
+      {
+         return dom.getElementsByTagName(0, namespaceURI, localName, false);
+      }
+
+      public Element getElementById(String elementId)
+      {
+         return null;
+      }
+
+      public DocumentType getDoctype()
+      {
+         return null;
+      }
+
+      public DOMImplementation getImplementation()
+      {
+         //the implementation of regular documents, to create modifiable ones
+         DocumentBuilderPool pool = DOMUtils.getDocumentBuilderPool();
+         try
+         {
+            javax.xml.parsers.DocumentBuilder builder = pool.acquire();
+            try
+            {
+               return builder.getDOMImplementation();
+            }
+            finally
+            {
+               pool.release(builder);
+            }
+         }
+         catch (ParserConfigurationException e)
+         {
+            throw new DOMException(DOMException.NOT_SUPPORTED_ERR, e.getMessage());
+         }
+      }
+
+      public String getInputEncoding()
+      {
+         return dom.xmlEncoding;
+      }
+
+      public String getXmlEncoding()
+      {
+         return dom.xmlEncoding;
+      }
+
+      public boolean getXmlStandalone()
+      {
+         return dom.xmlStandalone;
+      }
+
+      public String getXmlVersion()
+      {
+         return dom.xmlVersion != null ? dom.xmlVersion : "1.0";
+      }
+
+      public boolean getStrictErrorChecking()
+      {
+         return true;
+      }
+
+      public void setStrictErrorChecking(boolean strictErrorChecking)
+      {
+      }
+
+      public String getDocumentURI()
+      {
+         return null;
+      }
+
+      public DOMConfiguration getDomConfig()
+      {
+         return null;
+      }
+
+      public void normalizeDocument()
+      {
+      }
+
+      public void setXmlStandalone(boolean xmlStandalone)
+      {
+         throw readOnly(this);
+      }
+
+      public void setXmlVersion(String xmlVersion)
+      {
+         throw readOnly(this);
+      }
+
+      public void setDocumentURI(String documentURI)
+      {
+         throw readOnly(this);
+      }
+
+      public Element createElement(String tagName)
+      {
+         throw readOnly(this);
+      }
+
+      public DocumentFragment createDocumentFragment()
+      {
+         throw readOnly(this);
+      }
+
+      public Text createTextNode(String data)
+      {
+         throw readOnly(this);
+      }
+
+      public Comment createComment(String data)
+      {
+         throw readOnly(this);
+      }
+
+      public CDATASection createCDATASection(String data)
+      {
+         throw readOnly(this);
+      }
+
+      public ProcessingInstruction createProcessingInstruction(String target, String data)
+      {
+         throw readOnly(this);
+      }
+
+      public Attr createAttribute(String name)
+      {
+         throw readOnly(this);
+      }
+
+      public EntityReference createEntityReference(String name)
+      {
+         throw readOnly(this);
+      }
+
+      public Node importNode(Node importedNode, boolean deep)
+      {
+         throw readOnly(this);
+      }
+
+      public Element createElementNS(String namespaceURI, String qualifiedName)
+      {
+         throw readOnly(this);
+      }
+
+      public Attr createAttributeNS(String namespaceURI, String qualifiedName)
+      {
+         throw readOnly(this);
+      }
+
+      public Node adoptNode(Node source)
+      {
+         throw readOnly(this);
+      }
+
+      public Node renameNode(Node n, String namespaceURI, String qualifiedName)
+      {
+         throw readOnly(this);
+      }
+   }
+
+   private static final class ElementImpl extends NodeImpl implements Element
+   {
+      ElementImpl(CompactDOM dom, int id)
+      {
+         super(dom, id);
+      }
+
+      public short getNodeType()
+      {
+         return ELEMENT_NODE;
+      }
+
+      public String getNodeName()
+      {
+         return dom.qualifiedNames[dom.value(id)];
+      }
+
+      public String getTagName()
+      {
+         return getNodeName();
+      }
+
+      public String getNamespaceURI()
+      {
+         return dom.namespaceURIs[dom.value(id)];
+      }
+
+      public String getPrefix()
+      {
+         return dom.prefixes[dom.value(id)];
+      }
+
+      public String getLocalName()
+      {
+         return dom.localNames[dom.value(id)];
+      }
+
+      int scopeElement()
+      {
+         return id;
+      }
+
+      public String getTextContent()
+      {
+         int first = dom.firstChild(id);
+         if (first != NONE && dom.nextSibling(first) == NONE && dom.type(first) == TEXT_NODE)
+            return dom.text(first);
+         StringBuilder sb = new StringBuilder();
+         for (int n = id + 1, end = dom.subtreeEnd(id); n < end; n++)
+         {
+            if (dom.type(n) == TEXT_NODE || dom.type(n) == CDATA_SECTION_NODE)
+               sb.append(dom.text(n));
+         }
+         return sb.toString();
+      }
+
+      public NamedNodeMap getAttributes()
+      {
+         return new AttributeMap(dom, id);
+      }
+
+      public boolean hasAttributes()
+      {
+         return dom.attrEnd(id) > dom.offsets[id];
+      }
+
+      public String getAttribute(String name)
+      {
+         int index = dom.findAttr(id, name);
+         return index != NONE ? dom.attrValue(dom.offsets[id] + index) : "";
+      }
+
+      public String getAttributeNS(String namespaceURI, String localName)
+      {
+         int index = dom.findAttr(id, namespaceURI != null && namespaceURI.length() == 0 ? null : namespaceURI, localName);
+         return index != NONE ? dom.attrValue(dom.offsets[id] + index) : "";
+      }
+
+      public Attr getAttributeNode(String name)
+      {
+         int index = dom.findAttr(id, name);
+         return index != NONE ? dom.attr(id, index) : null;
+      }
+
+      public Attr getAttributeNodeNS(String namespaceURI, String localName)
+      {
+         int index = dom.findAttr(id, namespaceURI != null && namespaceURI.length() == 0 ? null : namespaceURI, localName);
+         return index != NONE ? dom.attr(id, index) : null;
+      }
+
+      public boolean hasAttribute(String name)
+      {
+         return dom.findAttr(id, name) != NONE;
+      }
+
+      public boolean hasAttributeNS(String namespaceURI, String localName)
+      {
+         return dom.findAttr(id, namespaceURI != null && namespaceURI.length() == 0 ? null : namespaceURI, localName) != NONE;
+      }
+
+      public NodeList getElementsByTagName(String name)
+      {
+         return dom.getElementsByTagName(id, null, name, true);
+      }
+
+      public NodeList getElementsByTagNameNS(String namespaceURI, String localName)
+      {
+         return dom.getElementsByTagName(id, namespaceURI, localName, false);
+      }
+
+      public TypeInfo getSchemaTypeInfo()
+      {
+         return null;
+      }
+
+      public void setAttribute(String name, String value)
+      {
+         throw readOnly(this);
+      }
+
+      public void removeAttribute(String name)
+      {
+         throw readOnly(this);
+      }
+
+      public Attr setAttributeNode(Attr newAttr)
+      {
+         throw readOnly(this);
+      }
+
+      public Attr removeAttributeNode(Attr oldAttr)
+      {
+         throw readOnly(this);
+      }
+
+      public void setAttributeNS(String namespaceURI, String qualifiedName, String value)
+      {
+         throw readOnly(this);
+      }
+
+      public void removeAttributeNS(String namespaceURI, String localName)
+      {
+         throw readOnly(this);
+      }
+
+      public Attr setAttributeNodeNS(Attr newAttr)
+      {
+         throw readOnly(this);
+      }
+
+      public void setIdAttribute(String name, boolean isId)
+      {
+         throw readOnly(this);
+      }
+
+      public void setIdAttributeNS(String namespaceURI, String localName, boolean isId)
+      {
+         throw readOnly(this);
+      }
+
+      public void setIdAttributeNode(Attr idAttr, boolean isId)
+      {
+         throw readOnly(this);
+      }
+   }
+
+   private static final class AttrImpl extends NodeImpl implements Attr
+   {
+      private final int element;
+
+      AttrImpl(CompactDOM dom, int id, int element)
+      {
+         super(dom, id);
+         this.element = element;
+      }
+
+      public short getNodeType()
+      {
+         return ATTRIBUTE_NODE;
+      }
+
+      public String getNodeName()
+      {
+         return dom.qualifiedNames[dom.attrNames[id]];
+      }
+
+      public String getName()
+      {
+         return getNodeName();
+      }
+
+      public String getNamespaceURI()
+      {
+         return dom.namespaceURIs[dom.attrNames[id]];
+      }
+
+      public String getPrefix()
+      {
+         return dom.prefixes[dom.attrNames[id]];
+      }
+
+      public String getLocalName()
+      {
+         return dom.localNames[dom.attrNames[id]];
+      }
+
+      public String getNodeValue()
+      {
+         return dom.attrValue(id);
+      }
+
+      public String getValue()
+      {
+         return getNodeValue();
+      }
+
+      public boolean getSpecified()
+      {
+         return true;
+      }
+
+      public Element getOwnerElement()
+      {
+         return (Element) dom.node(element);
+      }
+
+      public TypeInfo getSchemaTypeInfo()
+      {
+         return null;
+      }
+
+      public boolean isId()
+      {
+         return false;
+      }
+
+      int scopeElement()
+      {
+         return element;
+      }
+
+      long position()
+      {
+         return ((long) element << 32) + 1 + id;
+      }
+
+      public boolean isEqualNode(Node other)
+      {
+         //the value is not exposed as a child text node, as regular implementations do
+         return other == this || other != null && other.getNodeType() == ATTRIBUTE_NODE && CompactDOM.equals(getNodeName(), other.getNodeName())
+               && CompactDOM.equals(getLocalName(), other.getLocalName()) && CompactDOM.equals(getNamespaceURI(), other.getNamespaceURI())
+               && CompactDOM.equals(getValue(), other.getNodeValue());
+      }
+
+      public Node getParentNode()
+      {
+         return null;
+      }
+
+      public NodeList getChildNodes()
+      {
+         return new ElementList(dom, new int[0], 0);
+      }
+
+      public Node getFirstChild()
+      {
+         return null;
+      }
+
+      public Node getLastChild()
+      {
+         return null;
+      }
+
+      public Node getPreviousSibling()
+      {
+         return null;
+      }
+
+      public Node getNextSibling()
+      {
+         return null;
+      }
+
+      public boolean hasChildNodes()
+      {
+         return false;
+      }
+
+      public void setValue(String value)
+      {
+         throw readOnly(this);
+      }
+   }
+
+   private abstract static class CharacterDataImpl extends NodeImpl implements CharacterData
+   {
+      CharacterDataImpl(CompactDOM dom, int id)
+      {
+         super(dom, id);
+      }
+
+      public String getNodeValue()
+      {
+         return dom.text(id);
+      }
+
+      public String getData()
+      {
+         return dom.text(id);
+      }
+
+      public int getLength()
+      {
+         return dom.value(id);
+      }
+
+      public String substringData(int offset, int count)
+      {
+         int length = dom.value(id);
+         if (offset < 0 || offset > length || count < 0)
+            throw new DOMException(DOMException.INDEX_SIZE_ERR, null);
+         return dom.string(dom.offsets[id] + offset, Math.min(count, length - offset));
+      }
+
+      public void setData(String data)
+      {
+         throw readOnly(this);
+      }
+
+      public void appendData(String arg)
+      {
+         throw readOnly(this);
+      }
+
+      public void insertData(int offset, String arg)
+      {
+         throw readOnly(this);
+      }
+
+      public void deleteData(int offset, int count)
+      {
+         throw readOnly(this);
+      }
+
+      public void replaceData(int offset, int count, String arg)
+      {
+         throw readOnly(this);
+      }
+   }
+
+   private static class TextImpl extends CharacterDataImpl implements Text
+   {
+      TextImpl(CompactDOM dom, int id)
+      {
+         super(dom, id);
+      }
+
+      public short getNodeType()
+      {
+         return TEXT_NODE;
+      }
+
+      public String getNodeName()
+      {
+         return "#text";
+      }
+
+      public boolean isElementContentWhitespace()
+      {
+         return false;
+      }
+
+      public String getWholeText()
+      {
+         return getData();
+      }
+
+      public Text splitText(int offset)
+      {
+         throw readOnly(this);
+      }
+
+      public Text replaceWholeText(String content)
+      {
+         throw readOnly(this);
+      }
+   }
+
+   private static final class CDATASectionImpl extends TextImpl implements CDATASection
+   {
+      CDATASectionImpl(CompactDOM dom, int id)
+      {
+         super(dom, id);
+      }
+
+      public short getNodeType()
+      {
+         return CDATA_SECTION_NODE;
+      }
+
+      public String getNodeName()
+      {
+         return "#cdata-section";
+      }
+   }
+
+   private static final class CommentImpl extends CharacterDataImpl implements Comment
+   {
+      CommentImpl(CompactDOM dom, int id)
+      {
+         super(dom, id);
+      }
+
+      public short getNodeType()
+      {
+         return COMMENT_NODE;
+      }
+
+      public String getNodeName()
+      {
+         return "#comment";
+      }
+   }
+
+   private static final class ProcessingInstructionImpl extends NodeImpl implements ProcessingInstruction
+   {
+      ProcessingInstructionImpl(CompactDOM dom, int id)
+      {
+         super(dom, id);
+      }
+
+      public short getNodeType()
+      {
+         return PROCESSING_INSTRUCTION_NODE;
+      }
+
+      public String getNodeName()
+      {
+         return getTarget();
+      }
+
+      public String getTarget()
+      {
+         return dom.instructions[dom.offsets[id] * 2];
+      }
+
+      public String getNodeValue()
+      {
+         return getData();
+      }
+
+      public String getData()
+      {
+         return dom.instructions[dom.offsets[id] * 2 + 1];
+      }
+
+      public void setData(String data)
+      {
+         throw readOnly(this);
+      }
+   }
+
+   /**
+    * The children of a node; sequential access is constant time
+    */
+   private static final class ChildList implements NodeList
+   {
+      private final CompactDOM dom;
+      private final int parent;
+      private int cursorIndex = NONE;
+      private int cursor = NONE;
+
+      ChildList(CompactDOM dom, int parent)
+      {
+         this.dom = dom;
+         this.parent = parent;
+      }
+
+      public Node item(int index)
+      {
+         if (index < 0)
+            return null;
+         int i = 0;
+         int n = dom.firstChild(parent);
+         if (cursor != NONE && cursorIndex <= index)
+         {
+            i = cursorIndex;
+            n = cursor;
+         }
+         for (; n != NONE && i < index; i++)
+            n = dom.nextSibling(n);
+         if (n == NONE)
+            return null;
+         cursorIndex = i;
+         cursor = n;
+         return dom.node(n);
+      }
+
+      public int getLength()
+      {
+         int length = 0;
+         for (int n = dom.firstChild(parent); n != NONE; n = dom.nextSibling(n))
+            length++;
+         return length;
+      }
+   }
+
+   private static final class ElementList implements NodeList
+   {
+      private final CompactDOM dom;
+      private final int[] elements;
+      private final int length;
+
+      ElementList(CompactDOM dom, int[] elements, int length)
+      {
+         this.dom = dom;
+         this.elements = elements;
+         this.length = length;
+      }
+
+      public Node item(int index)
+      {
+         return index >= 0 && index < length ? dom.node(elements[index]) : null;
+      }
+
+      public int getLength()
+      {
+         return length;
+      }
+   }
+
+   private static final class AttributeMap implements NamedNodeMap
+   {
+      private final CompactDOM dom;
+      private final int element;
+
+      AttributeMap(CompactDOM dom, int element)
+      {
+         this.dom = dom;
+         this.element = element;
+      }
+
+      public Node getNamedItem(String name)
+      {
+         int index = dom.findAttr(element, name);
+         return index != NONE ? dom.attr(element, index) : null;
+      }
+
+      public Node getNamedItemNS(String namespaceURI, String localName)
+      {
+         int index = dom.findAttr(element, namespaceURI != null && namespaceURI.length() == 0 ? null : namespaceURI, localName);
+         return index != NONE ? dom.attr(element, index) : null;
+      }
+
+      public Node item(int index)
+      {
+         return index >= 0 && index < getLength() ? dom.attr(element, index) : null;
+      }
+
+      public int getLength()
+      {
+         return dom.attrEnd(element) - dom.offsets[element];
+      }
+
+      public Node setNamedItem(Node arg)
+      {
+         throw readOnly(dom.node(element));
+      }
+
+      public Node removeNamedItem(String name)
+      {
+         throw readOnly(dom.node(element));
+      }
+
+      public Node setNamedItemNS(Node arg)
+      {
+         throw readOnly(dom.node(element));
+      }
+
+      public Node removeNamedItemNS(String namespaceURI, String localName)
+      {
+         throw readOnly(dom.node(element));
+      }
+   }
+}
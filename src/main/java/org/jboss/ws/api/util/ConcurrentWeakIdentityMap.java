@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A minimal concurrent map with weakly referenced keys compared by identity, meant for classloader keyed caches.
+ * Lookups never block; entries whose key has been garbage collected are purged on subsequent modifications.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class ConcurrentWeakIdentityMap<K, V>
+{
+   private final ConcurrentMap<Key<K>, V> map = new ConcurrentHashMap<>();
+   private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+   /**
+    * Get the value mapped to the given key
+    *
+    * @param key  the key
+    * @return  the value or null if none is available
+    */
+   V get(K key)
+   {
+      return map.get(new LookupKey<K>(key));
+   }
+
+   /**
+    * Get the value mapped to the given key, computing and storing a new one when none is available. The function
+    * is invoked without holding any lock, so it can block or use this map; concurrent callers can thus compute
+    * a value each, the first one stored being returned to all of them.
+    *
+    * @param key  the key
+    * @param mappingFunction  the function computing the value to store
+    * @return  the current (existing or computed) value
+    */
+   V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction)
+   {
+      V value = map.get(new LookupKey<K>(key));
+      if (value == null)
+      {
+         V computed = mappingFunction.apply(key);
+         if (computed == null)
+            return null;
+         value = putIfAbsent(key, computed);
+         if (value == null)
+            value = computed;
+      }
+      return value;
+   }
+
+   /**
+    * Map the given value to the given key, unless a value is already mapped to it
+    *
+    * @param key  the key
+    * @param value  the value
+    * @return  the current value or null if none was available and the given one has been stored
+    */
+   V putIfAbsent(K key, V value)
+   {
+      expungeStaleEntries();
+      return map.putIfAbsent(new WeakKey<K>(key, queue), value);
+   }
+
+   /**
+    * Map the given value to the given key
+    *
+    * @param key  the key
+    * @param value  the value
+    * @return  the previous value or null if none was available
+    */
+   V put(K key, V value)
+   {
+      expungeStaleEntries();
+      return map.put(new WeakKey<K>(key, queue), value);
+   }
+
+   /**
+    * Remove the value mapped to the given key
+    *
+    * @param key  the key
+    * @return  the removed value or null if none was available
+    */
+   V remove(K key)
+   {
+      expungeStaleEntries();
+      return map.remove(new LookupKey<K>(key));
+   }
+
+   /**
+    * Remove all entries
+    */
+   void clear()
+   {
+      map.clear();
+      expungeStaleEntries();
+   }
+
+   private void expungeStaleEntries()
+   {
+      Reference<? extends K> ref;
+      while ((ref = queue.poll()) != null)
+      {
+         map.remove(ref);
+      }
+   }
+
+   private interface Key<K>
+   {
+      K get();
+   }
+
+   private static boolean equals(Key<?> key, Object obj)
+   {
+      if (key == obj)
+         return true;
+      if (!(obj instanceof Key))
+         return false;
+      Object referent = key.get();
+      return referent != null && referent == ((Key<?>) obj).get();
+   }
+
+   private static final class WeakKey<K> extends WeakReference<K> implements Key<K>
+   {
+      private final int hash;
+
+      WeakKey(K referent, ReferenceQueue<K> queue)
+      {
+         super(referent, queue);
+         this.hash = System.identityHashCode(referent);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return hash;
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         return ConcurrentWeakIdentityMap.equals(this, obj);
+      }
+   }
+
+   private static final class LookupKey<K> implements Key<K>
+   {
+      private final K referent;
+
+      LookupKey(K referent)
+      {
+         this.referent = referent;
+      }
+
+      public K get()
+      {
+         return referent;
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return System.identityHashCode(referent);
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         return ConcurrentWeakIdentityMap.equals(this, obj);
+      }
+   }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * Builds a DOM tree from SAX events, the way a {@link javax.xml.parsers.DocumentBuilder} with default settings
+ * does: namespace declarations become xmlns attributes, adjacent character data becomes a single text node,
+ * CDATA sections and comments are retained and entity references are expanded. Nodes are created using the
+ * namespace-aware (DOM Level 2) methods unless required otherwise. Qualified names not reported by the
+ * event source are replaced by local names.
+ * <p>
+ * Unlike a {@link javax.xml.parsers.DocumentBuilder}, a document type declaration only results in an empty
+ * {@link org.w3c.dom.DocumentType} node carrying its name, public and system ids: the internal subset and
+ * the entity and notation declarations are not reported by the SAX events used here and are lost, though
+ * the entity references in the content are still expanded by the event source.
+ */
+final class DOMContentHandler implements ContentHandler, LexicalHandler
+{
+   private final Document doc;
+   private final boolean namespaceAware;
+   private Node current;
+   private final StringBuilder text = new StringBuilder();
+   private boolean inCDATA;
+   private boolean inDTD;
+   private String[] prefixMappings = new String[8];
+   private int prefixMappingCount;
+
+   /**
+    * Constructor
+    *
+    * @param doc  the empty document to build the tree into
+    */
+   DOMContentHandler(Document doc)
+   {
+      this(doc, true);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param doc  the empty document to build the tree into
+    * @param namespaceAware  whether to create namespace-aware nodes, as a namespace-aware builder does
+    */
+   DOMContentHandler(Document doc, boolean namespaceAware)
+   {
+      this.doc = doc;
+      this.namespaceAware = namespaceAware;
+      this.current = doc;
+   }
+
+   @Override
+   public void setDocumentLocator(Locator locator)
+   {
+   }
+
+   @Override
+   public void startDocument()
+   {
+   }
+
+   @Override
+   public void endDocument()
+   {
+      flushText();
+   }
+
+   @Override
+   public void startPrefixMapping(String prefix, String uri)
+   {
+      if (prefixMappingCount + 2 > prefixMappings.length)
+      {
+         String[] grown = new String[prefixMappings.length * 2];
+         System.arraycopy(prefixMappings, 0, grown, 0, prefixMappingCount);
+         prefixMappings = grown;
+      }
+      prefixMappings[prefixMappingCount++] = prefix;
+      prefixMappings[prefixMappingCount++] = uri;
+   }
+
+   @Override
+   public void endPrefixMapping(String prefix)
+   {
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes atts)
+   {
+      flushText();
+      String name = qName.isEmpty() ? localName : qName;
+      Element element = namespaceAware ? doc.createElementNS(uri.isEmpty() ? null : uri, name) : doc.createElement(name);
+      for (int i = 0; i < prefixMappingCount; i += 2)
+      {
+         String prefix = prefixMappings[i];
+         String attrName = prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+         if (namespaceAware)
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attrName, prefixMappings[i + 1]);
+         else
+            element.setAttribute(attrName, prefixMappings[i + 1]);
+      }
+      prefixMappingCount = 0;
+      for (int i = 0; i < atts.getLength(); i++)
+      {
+         String attrURI = atts.getURI(i);
+         String attrName = atts.getQName(i).isEmpty() ? atts.getLocalName(i) : atts.getQName(i);
+         if (attrName.startsWith(XMLConstants.XMLNS_ATTRIBUTE) && (attrName.length() == 5 || attrName.charAt(5) == ':'))
+            attrURI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI; // declarations reported as attributes too (namespace-prefixes)
+         if (namespaceAware)
+            element.setAttributeNS(attrURI.isEmpty() ? null : attrURI, attrName, atts.getValue(i));
+         else
+            element.setAttribute(attrName, atts.getValue(i));
+      }
+      current.appendChild(element);
+      current = element;
+   }
+
+   @Override
+   public void endElement(String uri, String localName, String qName)
+   {
+      flushText();
+      current = current.getParentNode();
+   }
+
+   @Override
+   public void characters(char[] ch, int start, int length)
+   {
+      text.append(ch, start, length);
+   }
+
+   @Override
+   public void ignorableWhitespace(char[] ch, int start, int length)
+   {
+      text.append(ch, start, length);
+   }
+
+   @Override
+   public void processingInstruction(String target, String data)
+   {
+      if (!inDTD)
+      {
+         flushText();
+         current.appendChild(doc.createProcessingInstruction(target, data));
+      }
+   }
+
+   @Override
+   public void skippedEntity(String name)
+   {
+   }
+
+   @Override
+   public void startDTD(String name, String publicId, String systemId)
+   {
+      doc.appendChild(doc.getImplementation().createDocumentType(name, publicId, systemId));
+      inDTD = true;
+   }
+
+   @Override
+   public void endDTD()
+   {
+      inDTD = false;
+   }
+
+   @Override
+   public void startEntity(String name)
+   {
+   }
+
+   @Override
+   public void endEntity(String name)
+   {
+   }
+
+   @Override
+   public void startCDATA()
+   {
+      flushText();
+      inCDATA = true;
+   }
+
+   @Override
+   public void endCDATA()
+   {
+      current.appendChild(doc.createCDATASection(text.toString()));
+      text.setLength(0);
+      inCDATA = false;
+   }
+
+   @Override
+   public void comment(char[] ch, int start, int length)
+   {
+      if (!inDTD)
+      {
+         flushText();
+         current.appendChild(doc.createComment(new String(ch, start, length)));
+      }
+   }
+
+   private void flushText()
+   {
+      if (text.length() > 0 && !inCDATA)
+      {
+         current.appendChild(doc.createTextNode(text.toString()));
+         text.setLength(0);
+      }
+   }
+}
@@ -21,27 +21,44 @@ package org.jboss.ws.api.util;
 import static org.jboss.ws.api.Messages.MESSAGES;
 import static org.jboss.ws.api.Log.LOGGER;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.transform.OutputKeys;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import org.w3c.dom.Attr;
@@ -52,6 +69,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  * Basic DOM2 utilities
@@ -62,6 +80,32 @@ import org.xml.sax.SAXException;
  */
 public abstract class DOMUtils
 {
+   static final String XML_PREDEFINED_NAMESPACE = "URI:XML_PREDEFINED_NAMESPACE";
+
+   private static final int QNAME_CACHE_SIZE = 512;
+
+   /**
+    * The QNames (without namespace) created by the String based lookup methods; bounded to QNAME_CACHE_SIZE entries.
+    */
+   private static final ConcurrentMap<String, QName> qnameCache = new ConcurrentHashMap<String, QName>();
+
+   private static final int PATH_QUERY_CACHE_SIZE = 512;
+
+   /**
+    * The compiled path queries, keyed by namespace map and expressions; bounded to PATH_QUERY_CACHE_SIZE entries,
+    * evicting the least recently used ones. Access is synchronized on the map.
+    */
+   private static final Map<List<Object>, PathQuery> pathQueryCache = new LinkedHashMap<List<Object>, PathQuery>(16, 0.75f, true)
+   {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<List<Object>, PathQuery> eldest)
+      {
+         return size() > PATH_QUERY_CACHE_SIZE;
+      }
+   };
+
    /**
     * Get the qname of the given node.
     *
@@ -74,7 +118,8 @@ public abstract class DOMUtils
       return resolveQName(el, qualifiedName);
    }
 
-   /** Transform the given qualified name into a QName
+   /** Transform the given qualified name into a QName; when resolving multiple names
+    * within the same document, consider using a {@link NamespaceContextResolver}
     *
     * @param el  node
     * @param qualifiedName  qualified name
@@ -95,7 +140,7 @@ public abstract class DOMUtils
 
          if ("xmlns".equals(prefix))
          {
-            namespaceURI = "URI:XML_PREDEFINED_NAMESPACE";
+            namespaceURI = XML_PREDEFINED_NAMESPACE;
          }
          else
          {
@@ -139,7 +184,7 @@ public abstract class DOMUtils
     */
    public static String getAttributeValue(Element el, String attrName)
    {
-      return getAttributeValue(el, new QName(attrName));
+      return getAttributeValue(el, toQName(attrName));
    }
 
    /** Get the value from the given attribute
@@ -171,7 +216,7 @@ public abstract class DOMUtils
     */
    public static QName getAttributeValueAsQName(Element el, String attrName)
    {
-      return getAttributeValueAsQName(el, new QName(attrName));
+      return getAttributeValueAsQName(el, toQName(attrName));
 
    }
 
@@ -204,7 +249,7 @@ public abstract class DOMUtils
     */
    public static boolean getAttributeValueAsBoolean(Element el, String attrName)
    {
-      return getAttributeValueAsBoolean(el, new QName(attrName));
+      return getAttributeValueAsBoolean(el, toQName(attrName));
    }
 
    /**
@@ -217,8 +262,39 @@ public abstract class DOMUtils
    public static boolean getAttributeValueAsBoolean(Element el, QName attrName)
    {
       String attrVal = getAttributeValue(el, attrName);
-      boolean ret = "true".equalsIgnoreCase(attrVal) || "1".equalsIgnoreCase(attrVal);
-      return ret;
+      return attrVal != null && isTrue(attrVal);
+   }
+
+   /**
+    * Get the boolean value from the given attribute
+    *
+    * @param el   element
+    * @param attrName   attribute name
+    * @param defaultValue   value returned when the attribute value is empty or the attribute is not present
+    * @return  boolean
+    */
+   public static boolean getAttributeAsBoolean(Element el, String attrName, boolean defaultValue)
+   {
+      return getAttributeAsBoolean(el, toQName(attrName), defaultValue);
+   }
+
+   /**
+    * Get the boolean value from the given attribute
+    *
+    * @param el   element
+    * @param attrName   attribute name
+    * @param defaultValue   value returned when the attribute value is empty or the attribute is not present
+    * @return  boolean
+    */
+   public static boolean getAttributeAsBoolean(Element el, QName attrName, boolean defaultValue)
+   {
+      String attrVal = getAttributeValue(el, attrName);
+      return attrVal != null ? isTrue(attrVal) : defaultValue;
+   }
+
+   private static boolean isTrue(String value)
+   {
+      return value.length() == 1 ? value.charAt(0) == '1' : "true".equalsIgnoreCase(value);
    }
 
    /**
@@ -230,7 +306,7 @@ public abstract class DOMUtils
     */
    public static Integer getAttributeValueAsInteger(Element el, String attrName)
    {
-      return getAttributeValueAsInteger(el, new QName(attrName));
+      return getAttributeValueAsInteger(el, toQName(attrName));
    }
 
    /**
@@ -243,7 +319,61 @@ public abstract class DOMUtils
    public static Integer getAttributeValueAsInteger(Element el, QName attrName)
    {
       String attrVal = getAttributeValue(el, attrName);
-      return (attrVal != null ? new Integer(attrVal) : null);
+      return (attrVal != null ? Integer.valueOf(attrVal) : null);
+   }
+
+   /**
+    * Get the int value from the given attribute
+    *
+    * @param el   element
+    * @param attrName   attribute name
+    * @param defaultValue   value returned when the attribute value is empty or the attribute is not present
+    * @return  int
+    */
+   public static int getAttributeAsInt(Element el, String attrName, int defaultValue)
+   {
+      return getAttributeAsInt(el, toQName(attrName), defaultValue);
+   }
+
+   /**
+    * Get the int value from the given attribute
+    *
+    * @param el   element
+    * @param attrName   attribute name
+    * @param defaultValue   value returned when the attribute value is empty or the attribute is not present
+    * @return  int
+    */
+   public static int getAttributeAsInt(Element el, QName attrName, int defaultValue)
+   {
+      String attrVal = getAttributeValue(el, attrName);
+      return (attrVal != null ? Integer.parseInt(attrVal) : defaultValue);
+   }
+
+   /**
+    * Get the long value from the given attribute
+    *
+    * @param el   element
+    * @param attrName   attribute name
+    * @param defaultValue   value returned when the attribute value is empty or the attribute is not present
+    * @return  long
+    */
+   public static long getAttributeAsLong(Element el, String attrName, long defaultValue)
+   {
+      return getAttributeAsLong(el, toQName(attrName), defaultValue);
+   }
+
+   /**
+    * Get the long value from the given attribute
+    *
+    * @param el   element
+    * @param attrName   attribute name
+    * @param defaultValue   value returned when the attribute value is empty or the attribute is not present
+    * @return  long
+    */
+   public static long getAttributeAsLong(Element el, QName attrName, long defaultValue)
+   {
+      String attrVal = getAttributeValue(el, attrName);
+      return (attrVal != null ? Long.parseLong(attrVal) : defaultValue);
    }
 
    /**
@@ -255,19 +385,65 @@ public abstract class DOMUtils
    public static Map<QName, String> getAttributes(Element el)
    {
       Map<QName, String> attmap = new HashMap<QName, String>();
+      NamespaceContextResolver resolver = new NamespaceContextResolver();
       NamedNodeMap attribs = el.getAttributes();
       int len = attribs.getLength();
       for (int i = 0; i < len; i++)
       {
          Attr attr = (Attr) attribs.item(i);
          String name = attr.getName();
-         QName qname = resolveQName(el, name);
+         QName qname = resolver.resolveQName(el, name);
          String value = attr.getNodeValue();
          attmap.put(qname, value);
       }
       return attmap;
    }
 
+   /**
+    * Get a read-only, lazy view of the attributes as Map&lt;QName, String&gt;; the attribute names are
+    * resolved only when accessed. The view is backed by the element: attribute values are read from the element
+    * on each access, so value changes are visible through the view; attributes must not be added or removed
+    * while the view is in use.
+    *
+    * @param el   element
+    * @return  Map
+    */
+   public static Map<QName, String> getAttributesView(Element el)
+   {
+      return new AttributeMap(el);
+   }
+
+   /**
+    * Copy attributes between elements by cloning (or importing, when the elements belong to different documents)
+    * the attribute nodes, instead of setting each attribute by name and value as {@link #copyAttributes} does
+    *
+    * @param destElement  element
+    * @param srcElement   element
+    */
+   public static void importAttributes(Element destElement, Element srcElement)
+   {
+      Document doc = destElement.getOwnerDocument();
+      boolean sameDocument = doc == srcElement.getOwnerDocument();
+      NamedNodeMap attribs = srcElement.getAttributes();
+      int len = attribs.getLength();
+      for (int i = 0; i < len; i++)
+      {
+         Attr attr = (Attr) attribs.item(i);
+
+         // Prevent DOMException: NAMESPACE_ERR, see copyAttributes
+         if (attr.getNamespaceURI() == null && attr.getName().startsWith("xmlns"))
+         {
+            if (LOGGER.isTraceEnabled())
+               LOGGER.ignoringAttribute(null, attr.getName(), attr.getNodeValue());
+         }
+         else
+         {
+            Attr copy = (Attr) (sameDocument ? attr.cloneNode(true) : doc.importNode(attr, true));
+            destElement.setAttributeNodeNS(copy);
+         }
+      }
+   }
+
    /**
     * Copy attributes between elements
     *
@@ -369,20 +545,26 @@ public abstract class DOMUtils
     */
    public static String getTextContent(Node node)
    {
-      boolean hasTextContent = false;
-      StringBuilder buffer = new StringBuilder();
-      NodeList nlist = node.getChildNodes();
-      int len = nlist.getLength();
-      for (int i = 0; i < len; i++)
+      String text = null;
+      StringBuilder buffer = null;
+      for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
       {
-         Node child = nlist.item(i);
          if (child.getNodeType() == Node.TEXT_NODE)
          {
-            buffer.append(child.getNodeValue());
-            hasTextContent = true;
+            if (text == null)
+            {
+               // the value of a single text node is returned as is
+               text = child.getNodeValue();
+            }
+            else
+            {
+               if (buffer == null)
+                  buffer = new StringBuilder(text);
+               buffer.append(child.getNodeValue());
+            }
          }
       }
-      return (hasTextContent ? buffer.toString() : null);
+      return (buffer != null ? buffer.toString() : text);
    }
 
    /**
@@ -429,7 +611,7 @@ public abstract class DOMUtils
     */
    public static Element getFirstChildElement(Node node, String nodeName, boolean recursive)
    {
-      return getFirstChildElementIntern(node, new QName(nodeName), recursive);
+      return getFirstChildElementIntern(node, toQName(nodeName), recursive);
    }
 
    /**
@@ -459,13 +641,8 @@ public abstract class DOMUtils
 
    private static Element getFirstChildElementIntern(Node node, QName nodeName, boolean recursive)
    {
-      Element childElement = null;
-      Iterator<Element> it = getChildElementsIntern(node, nodeName, recursive);
-      if (it.hasNext())
-      {
-         childElement = (Element) it.next();
-      }
-      return childElement;
+      //stop at the first match, walking the tree iteratively
+      return new ElementSpliterator(node.getFirstChild(), null, nodeName, recursive).next();
    }
 
    /**
@@ -490,7 +667,7 @@ public abstract class DOMUtils
     */
    public static Iterator<Element> getChildElements(Node node, String nodeName, boolean recursive)
    {
-      return getChildElementsIntern(node, new QName(nodeName), recursive);
+      return getChildElementsIntern(node, toQName(nodeName), recursive);
    }
 
    /**
@@ -525,7 +702,7 @@ public abstract class DOMUtils
 
    public static List<Element> getChildElementsAsList(Node node, String nodeName, boolean recursive)
    {
-      return getChildElementsAsListIntern(node, new QName(nodeName), recursive);
+      return getChildElementsAsListIntern(node, toQName(nodeName), recursive);
    }
 
    public static List<Element> getChildElementsAsList(Node node, QName nodeName)
@@ -557,26 +734,10 @@ public abstract class DOMUtils
 
    private static void search(List<Element> list, Element baseElement, QName nodeName, boolean recursive)
    {
-      if (nodeName == null)
+      if (matches(baseElement, nodeName))
       {
          list.add(baseElement);
       }
-      else
-      {
-         QName qname;
-         if (nodeName.getNamespaceURI().length() > 0)
-         {
-            qname = new QName(baseElement.getNamespaceURI(), baseElement.getLocalName());
-         }
-         else
-         {
-            qname = new QName(baseElement.getLocalName());
-         }
-         if (qname.equals(nodeName))
-         {
-            list.add(baseElement);
-         }
-      }
       if (recursive)
       {
          NodeList nlist = baseElement.getChildNodes();
@@ -592,11 +753,139 @@ public abstract class DOMUtils
       }
    }
 
+   /**
+    * Gets a lazy stream of the child elements; the DOM tree is walked on demand
+    *
+    * @param node  start node
+    * @return  Stream
+    */
+   public static Stream<Element> getChildElementsAsStream(Node node)
+   {
+      return getChildElementsAsStream(node, (QName) null, false);
+   }
+
+   /**
+    * Gets a lazy stream of the child elements for a given local name without namespace; the DOM tree is walked
+    * on demand and parallel streams split the traversal by subtrees
+    *
+    * @param node  start node
+    * @param nodeName  name
+    * @param recursive  recurse flag
+    * @return  Stream
+    */
+   public static Stream<Element> getChildElementsAsStream(Node node, String nodeName, boolean recursive)
+   {
+      return getChildElementsAsStream(node, toQName(nodeName), recursive);
+   }
+
+   /**
+    * Gets a lazy stream of the child elements for a given qname; the DOM tree is walked on demand
+    * and parallel streams split the traversal by subtrees (this requires a DOM implementation supporting
+    * concurrent reads, e.g. not using deferred node expansion)
+    *
+    * @param node  start node
+    * @param nodeName  name, null for any element
+    * @param recursive  recurse flag
+    * @return  Stream
+    */
+   public static Stream<Element> getChildElementsAsStream(Node node, QName nodeName, boolean recursive)
+   {
+      return StreamSupport.stream(new ElementSpliterator(node.getFirstChild(), null, nodeName, recursive), false);
+   }
+
+   /**
+    * Gets a lazy iterable view of the child elements for a given qname; the DOM tree is walked on demand
+    *
+    * @param node  start node
+    * @param nodeName  name, null for any element
+    * @param recursive  recurse flag
+    * @return  Iterable
+    */
+   public static Iterable<Element> getChildElementsAsIterable(final Node node, final QName nodeName, final boolean recursive)
+   {
+      return () -> Spliterators.iterator(new ElementSpliterator(node.getFirstChild(), null, nodeName, recursive));
+   }
+
+   /**
+    * Checks whether the given element matches the given name without allocating: when the name has no namespace,
+    * only the local name is compared
+    */
+   static boolean matches(Element element, QName nodeName)
+   {
+      if (nodeName == null)
+         return true;
+      String namespaceURI = nodeName.getNamespaceURI();
+      if (namespaceURI.length() > 0 && !namespaceURI.equals(element.getNamespaceURI()))
+         return false;
+      return nodeName.getLocalPart().equals(element.getLocalName());
+   }
+
    private static Iterator<Element> getChildElementsIntern(Node node, QName nodeName, boolean recursive)
    {
       return getChildElementsAsListIntern(node, nodeName, recursive).iterator();
    }
 
+   /**
+    * Get the QName for the given local name without namespace, reusing a cached instance when available
+    */
+   private static QName toQName(String localPart)
+   {
+      if (localPart == null)
+         return new QName(localPart); // fails as usual
+      QName qname = qnameCache.get(localPart);
+      if (qname == null)
+      {
+         qname = new QName(localPart);
+         if (qnameCache.size() < QNAME_CACHE_SIZE)
+            qnameCache.putIfAbsent(localPart, qname);
+      }
+      return qname;
+   }
+
+   /**
+    * Compile the given path expressions, whose namespaces are uris, or reuse a cached compilation
+    *
+    * @param paths  the path expressions
+    * @return  the compiled query
+    * @see PathQuery
+    */
+   public static PathQuery compilePaths(String... paths)
+   {
+      return compilePaths(null, paths);
+   }
+
+   /**
+    * Compile the given path expressions, resolving namespace prefixes through the given map,
+    * or reuse a cached compilation; the most recently used compilations are cached
+    *
+    * @param namespaces  the namespace uris by prefix, can be null
+    * @param paths       the path expressions
+    * @return  the compiled query
+    * @see PathQuery
+    */
+   public static PathQuery compilePaths(Map<String, String> namespaces, String... paths)
+   {
+      Map<String, String> ns = namespaces != null ? namespaces : Collections.<String, String>emptyMap();
+      PathQuery query;
+      synchronized (pathQueryCache)
+      {
+         query = pathQueryCache.get(Arrays.<Object>asList(ns, Arrays.asList(paths)));
+      }
+      if (query == null)
+      {
+         //the cache key must not be affected by later changes to the given map and array
+         ns = new HashMap<String, String>(ns);
+         query = new PathQuery(ns, paths);
+         synchronized (pathQueryCache)
+         {
+            PathQuery cached = pathQueryCache.putIfAbsent(Arrays.<Object>asList(ns, Arrays.asList(paths.clone())), query);
+            if (cached != null)
+               query = cached;
+         }
+      }
+      return query;
+   }
+
    /**
     * Gets parent element or null if there is none
     *
@@ -647,20 +936,31 @@ public abstract class DOMUtils
          // Thus in general applications are strongly discouraged from accessing methods defined on SAXSource.
          // The XMLReader object obtained by the getXMLReader method shall be used only for parsing the InputSource object returned by the getInputSource method.
 
-         final boolean hasInputSource = ((SAXSource) source).getInputSource() != null;
+         final InputSource inputSource = ((SAXSource) source).getInputSource();
          final boolean hasXMLReader = ((SAXSource) source).getXMLReader() != null;
 
-         if (hasInputSource || hasXMLReader)
+         if (inputSource != null && !hasXMLReader)
+         {
+            // a plain input source, parsed by the given builder with its own settings
+            retElement = DOMUtils.parse(inputSource, builder);
+         }
+         else if (hasXMLReader)
          {
             try
             {
-               TransformerFactory tf = TransformerFactory.newInstance();
-               ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
-               Transformer transformer = tf.newTransformer();
-               transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-               transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-               transformer.transform(source, new StreamResult(baos));
-               retElement = DOMUtils.parse(new ByteArrayInputStream(baos.toByteArray()), builder);
+               Document doc;
+               boolean namespaceAware;
+               synchronized (builder) //synchronize to prevent concurrent usage of the same DocumentBuilder
+               {
+                  doc = builder.newDocument();
+                  namespaceAware = builder.isNamespaceAware();
+               }
+               // the events of the source reader are fed straight into the tree, retaining CDATA sections and comments
+               DOMContentHandler handler = new DOMContentHandler(doc, namespaceAware);
+               SAXResult result = new SAXResult(handler);
+               result.setLexicalHandler(handler);
+               newTransformer().transform(source, result);
+               retElement = doc.getDocumentElement();
             }
             catch (TransformerException ex)
             {
@@ -676,6 +976,54 @@ public abstract class DOMUtils
       return retElement;
    }
 
+   /**
+    * Get the pool of builders created by the namespace-aware, secure-processing DocumentBuilderFactory
+    * looked up (once) using the current thread context classloader
+    *
+    * @return  document builder pool
+    */
+   public static DocumentBuilderPool getDocumentBuilderPool()
+   {
+      return getDocumentBuilderPool(SecurityActions.getContextClassLoader());
+   }
+
+   /**
+    * Get the pool of builders created by the namespace-aware, secure-processing DocumentBuilderFactory
+    * looked up (once) using the given classloader
+    *
+    * @param loader  classloader
+    * @return  document builder pool
+    */
+   public static DocumentBuilderPool getDocumentBuilderPool(ClassLoader loader)
+   {
+      return XMLFactories.getInstance(loader).getDocumentBuilderPool();
+   }
+
+   /**
+    * Create a new identity transformer using the secure-processing TransformerFactory
+    * looked up (once) using the current thread context classloader
+    *
+    * @return  transformer
+    * @throws TransformerConfigurationException  exception
+    */
+   public static Transformer newTransformer() throws TransformerConfigurationException
+   {
+      return newTransformer(SecurityActions.getContextClassLoader());
+   }
+
+   /**
+    * Create a new identity transformer using the secure-processing TransformerFactory
+    * looked up (once) using the given classloader
+    *
+    * @param loader  classloader
+    * @return  transformer
+    * @throws TransformerConfigurationException  exception
+    */
+   public static Transformer newTransformer(ClassLoader loader) throws TransformerConfigurationException
+   {
+      return XMLFactories.getInstance(loader).newTransformer();
+   }
+
    /**
     * Parse the given XML string and return the root Element
     *
@@ -685,18 +1033,76 @@ public abstract class DOMUtils
     * @throws IOException    exception
     */
    public static Element parse(String xmlString, DocumentBuilder builder) throws IOException
+   {
+      return parse((CharSequence) xmlString, builder);
+   }
+
+   /**
+    * Parse the given XML string and return the root Element, going through the given cache
+    *
+    * @param xmlString   string to be parsed
+    * @param builder     document builder
+    * @param cache       parse cache, or null to always parse
+    * @return    element, owned by the caller even when served from the cache
+    * @throws IOException    exception
+    * @see ParseCache
+    */
+   public static Element parse(String xmlString, DocumentBuilder builder, ParseCache cache) throws IOException
+   {
+      return cache != null ? cache.parse(xmlString, builder) : parse((CharSequence) xmlString, builder);
+   }
+
+   /**
+    * Parse the given XML characters and return the root Element; the characters are read in place,
+    * hence any encoding declaration is ignored.
+    *
+    * @param xmlChars    characters to be parsed
+    * @param builder     document builder
+    * @return    element
+    * @throws IOException    exception
+    */
+   public static Element parse(CharSequence xmlChars, DocumentBuilder builder) throws IOException
    {
       try
       {
-         return parse(new ByteArrayInputStream(xmlString.getBytes("UTF-8")), builder);
+         return parse(new InputSource(new CharSequenceReader(xmlChars)), builder);
       }
       catch (IOException e)
       {
-         LOGGER.cannotParse(xmlString);
+         LOGGER.cannotParse(xmlChars.toString());
          throw e;
       }
    }
 
+   /**
+    * Parse the remaining content of the given XML buffer and return the root Element; the bytes are
+    * read in place and the buffer position is not modified.
+    *
+    * @param xmlBuffer   heap, direct or mapped buffer
+    * @param builder     document builder
+    * @return    element
+    * @throws IOException    exception
+    */
+   public static Element parse(ByteBuffer xmlBuffer, DocumentBuilder builder) throws IOException
+   {
+      return parse(new ByteBufferInputStream(xmlBuffer), builder);
+   }
+
+   /**
+    * Parse the given region of an XML file, memory-mapping it, and return the root Element
+    *
+    * @param channel     file channel, not closed by this method
+    * @param position    position of the region within the file
+    * @param size        size of the region
+    * @param builder     document builder
+    * @return    element
+    * @throws IOException    exception
+    */
+   public static Element parse(FileChannel channel, long position, long size, DocumentBuilder builder) throws IOException
+   {
+      return parse(channel.map(FileChannel.MapMode.READ_ONLY, position, size), builder);
+   }
+
    /**
     * Parse the given XML stream and return the root Element
     *
@@ -764,6 +1170,368 @@ public abstract class DOMUtils
       }
    }
 
+   /**
+    * Parse the given XML stream into a compact, read-only tree and return the root Element. Meant for
+    * inspection-only usage, the tree retains a fraction of the heap of a regular DOM tree; its nodes can be
+    * imported into regular documents when a modifiable copy is needed.
+    * <p>
+    * Unlike {@link #parse(InputStream, DocumentBuilderPool)}, DTDs are not processed: the document type declaration is dropped
+    * (the tree has no {@link org.w3c.dom.DocumentType}) and documents referencing entities declared in their
+    * internal subset, like <code>&lt;!DOCTYPE a [&lt;!ENTITY e 'x'&gt;]&gt;&lt;a&gt;&amp;e;&lt;/a&gt;</code>,
+    * are rejected.
+    *
+    * @param xmlStream    input stream
+    * @return  element
+    * @throws IOException   exception
+    */
+   public static Element parseCompact(InputStream xmlStream) throws IOException
+   {
+      try
+      {
+         return parseCompact(XMLFactories.getInstance(SecurityActions.getContextClassLoader()).createXMLStreamReader(xmlStream));
+      }
+      catch (XMLStreamException e)
+      {
+         throw new IOException(e.toString());
+      }
+      finally
+      {
+         xmlStream.close();
+      }
+   }
+
+   /**
+    * Parse the given XML characters into a compact, read-only tree and return the root Element
+    *
+    * @param xmlReader    character stream
+    * @return  element
+    * @throws IOException   exception
+    * @see #parseCompact(InputStream)
+    */
+   public static Element parseCompact(Reader xmlReader) throws IOException
+   {
+      try
+      {
+         return parseCompact(XMLFactories.getInstance(SecurityActions.getContextClassLoader()).createXMLStreamReader(xmlReader));
+      }
+      catch (XMLStreamException e)
+      {
+         throw new IOException(e.toString());
+      }
+      finally
+      {
+         xmlReader.close();
+      }
+   }
+
+   private static Element parseCompact(XMLStreamReader reader) throws XMLStreamException
+   {
+      try
+      {
+         return CompactDOM.build(reader).getDocumentElement();
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+
+   /**
+    * Parse the given XML string and return the root Element, using a builder from the provided pool
+    *
+    * @param xmlString   string to be parsed
+    * @param pool        document builder pool
+    * @return    element
+    * @throws IOException    exception
+    */
+   public static Element parse(String xmlString, DocumentBuilderPool pool) throws IOException
+   {
+      try
+      {
+         return parse(new InputSource(new CharSequenceReader(xmlString)), pool);
+      }
+      catch (IOException e)
+      {
+         LOGGER.cannotParse(xmlString);
+         throw e;
+      }
+   }
+
+   /**
+    * Parse the given XML stream and return the root Element, using a builder from the provided pool
+    *
+    * @param xmlStream    input stream
+    * @param pool         document builder pool
+    * @return  element
+    * @throws IOException   exception
+    */
+   public static Element parse(InputStream xmlStream, DocumentBuilderPool pool) throws IOException
+   {
+      return parse(new InputSource(xmlStream), pool);
+   }
+
+   /**
+    * Parse the given input source and return the root Element, using a builder from the provided pool
+    *
+    * @param source   input source
+    * @param pool     document builder pool
+    * @return  element
+    * @throws IOException   exception
+    */
+   public static Element parse(InputSource source, DocumentBuilderPool pool) throws IOException
+   {
+      try
+      {
+         DocumentBuilder builder = pool.acquire();
+         try
+         {
+            return builder.parse(source).getDocumentElement();
+         }
+         finally
+         {
+            pool.release(builder);
+         }
+      }
+      catch (SAXException se)
+      {
+         throw new IOException(se.toString());
+      }
+      catch (ParserConfigurationException pce)
+      {
+         throw new IOException(pce);
+      }
+      finally
+      {
+         InputStream is = source.getByteStream();
+         if (is != null)
+         {
+            is.close();
+         }
+         Reader r = source.getCharacterStream();
+         if (r != null)
+         {
+            r.close();
+         }
+      }
+   }
+
+   /**
+    * Parse the given XML string and return the root Element, enforcing the given resource limits
+    *
+    * @param xmlString   string to be parsed
+    * @param limits      resource limits
+    * @return    element
+    * @throws ParseLimitExceededException    if a limit is exceeded
+    * @throws IOException    exception
+    * @see #parse(InputSource, ParseLimits)
+    */
+   public static Element parse(String xmlString, ParseLimits limits) throws IOException
+   {
+      limits.checkSize(xmlString.length());
+      return parse(new InputSource(new CharSequenceReader(xmlString)), limits);
+   }
+
+   /**
+    * Parse the given XML stream and return the root Element, enforcing the given resource limits
+    *
+    * @param xmlStream    input stream
+    * @param limits       resource limits
+    * @return  element
+    * @throws ParseLimitExceededException    if a limit is exceeded
+    * @throws IOException   exception
+    * @see #parse(InputSource, ParseLimits)
+    */
+   public static Element parse(InputStream xmlStream, ParseLimits limits) throws IOException
+   {
+      return parse(new InputSource(xmlStream), limits);
+   }
+
+   /**
+    * Parse the given input source and return the root Element, enforcing the given resource limits while
+    * parsing: the parse is aborted as soon as the input is found to exceed a limit, without reading
+    * the rest of it. Meant for untrusted inputs; the tree is built by the secure-processing factories
+    * looked up using the current thread context classloader. The document type of the returned tree only
+    * has a name and ids, its internal subset and entity declarations are not retained.
+    *
+    * @param source   input source
+    * @param limits   resource limits
+    * @return  element
+    * @throws ParseLimitExceededException    if a limit is exceeded
+    * @throws IOException   exception
+    */
+   public static Element parse(InputSource source, ParseLimits limits) throws IOException
+   {
+      XMLFactories factories = XMLFactories.getInstance(SecurityActions.getContextClassLoader());
+      try
+      {
+         Document doc;
+         DocumentBuilderPool pool = factories.getDocumentBuilderPool();
+         DocumentBuilder builder = pool.acquire();
+         try
+         {
+            doc = builder.newDocument();
+         }
+         finally
+         {
+            pool.release(builder);
+         }
+         XMLReader reader = factories.acquireXMLReader();
+         try
+         {
+            limits.parse(reader, source, new DOMContentHandler(doc));
+         }
+         finally
+         {
+            factories.releaseXMLReader(reader);
+         }
+         return doc.getDocumentElement();
+      }
+      catch (SAXException se)
+      {
+         throw new IOException(se.toString());
+      }
+      catch (ParserConfigurationException pce)
+      {
+         throw new IOException(pce);
+      }
+      finally
+      {
+         InputStream is = source.getByteStream();
+         if (is != null)
+         {
+            is.close();
+         }
+         Reader r = source.getCharacterStream();
+         if (r != null)
+         {
+            r.close();
+         }
+      }
+   }
+
+   /**
+    * Parse the given input sources concurrently using the common fork-join pool; each parse runs with
+    * its own builder from the provided pool. Input streams can be provided wrapping them into input sources.
+    *
+    * @param sources   input sources
+    * @param pool      document builder pool
+    * @return  the outcome of each parse, in the order of the provided sources
+    */
+   public static List<ParseResult> parseAll(Collection<? extends InputSource> sources, DocumentBuilderPool pool)
+   {
+      return parseAll(sources, pool, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * Parse the given input sources concurrently using the provided executor (e.g. a fork-join pool or a
+    * virtual thread per task executor); each parse runs with its own builder from the provided pool.
+    * A parse failure does not affect the other ones.
+    *
+    * @param sources   input sources
+    * @param pool      document builder pool
+    * @param executor  executor
+    * @return  the outcome of each parse, in the order of the provided sources
+    */
+   public static List<ParseResult> parseAll(Collection<? extends InputSource> sources, final DocumentBuilderPool pool, Executor executor)
+   {
+      List<CompletableFuture<ParseResult>> futures = new ArrayList<CompletableFuture<ParseResult>>(sources.size());
+      for (final InputSource source : sources)
+      {
+         futures.add(CompletableFuture.supplyAsync(() -> parseResult(source, pool), executor));
+      }
+      List<ParseResult> results = new ArrayList<ParseResult>(futures.size());
+      for (CompletableFuture<ParseResult> future : futures)
+      {
+         results.add(future.join());
+      }
+      return results;
+   }
+
+   private static ParseResult parseResult(InputSource source, DocumentBuilderPool pool)
+   {
+      try
+      {
+         return new ParseResult(parse(source, pool), null);
+      }
+      catch (IOException | RuntimeException e)
+      {
+         return new ParseResult(null, e);
+      }
+   }
+
+   /**
+    * The outcome of the parse of an input source by {@link DOMUtils#parseAll}.
+    */
+   public static final class ParseResult
+   {
+      private final Element element;
+      private final Exception failure;
+
+      ParseResult(Element element, Exception failure)
+      {
+         this.element = element;
+         this.failure = failure;
+      }
+
+      /**
+       * @return the root element, null if the parse failed
+       */
+      public Element getElement()
+      {
+         return element;
+      }
+
+      /**
+       * @return the parse failure, null if the parse succeeded
+       */
+      public Exception getFailure()
+      {
+         return failure;
+      }
+   }
+
+   /**
+    * Serialize the given node to the given stream, using UTF-8 encoding; missing namespace
+    * declarations are added where needed
+    *
+    * @param node   node (e.g. document or element)
+    * @param out    output stream, flushed but not closed
+    * @param omitDeclaration  whether to omit the XML declaration
+    * @throws IOException   exception
+    */
+   public static void write(Node node, OutputStream out, boolean omitDeclaration) throws IOException
+   {
+      DOMWriter.write(node, out, omitDeclaration);
+   }
+
+   /**
+    * Serialize the given node to the given writer; missing namespace declarations are added where needed
+    *
+    * @param node   node (e.g. document or element)
+    * @param writer   writer, flushed but not closed
+    * @param omitDeclaration  whether to omit the XML declaration
+    * @throws IOException   exception
+    */
+   public static void write(Node node, Writer writer, boolean omitDeclaration) throws IOException
+   {
+      DOMWriter.write(node, writer, omitDeclaration);
+   }
+
+   /**
+    * Serialize the given node to the given buffer, using UTF-8 encoding; missing namespace declarations are
+    * added where needed. The buffer position is advanced past the written bytes.
+    *
+    * @param node   node (e.g. document or element)
+    * @param buffer   buffer
+    * @param omitDeclaration  whether to omit the XML declaration
+    * @throws IOException   exception
+    * @throws java.nio.BufferOverflowException  if the buffer has not enough remaining space
+    */
+   public static void write(Node node, ByteBuffer buffer, boolean omitDeclaration) throws IOException
+   {
+      DOMWriter.write(node, buffer, omitDeclaration);
+   }
+
    /**
     * Create an Element for a given name, prefix and uri
     *
@@ -788,4 +1556,18 @@ public abstract class DOMUtils
          return doc.createElementNS(uri, prefix + ":" + localPart);
       }
    }
+
+   /**
+    * Create an Element from the given template, replacing its placeholders with the given values
+    *
+    * @param template    element template
+    * @param doc         document
+    * @param values      placeholder values
+    * @return  element
+    * @see ElementTemplate
+    */
+   public static Element createElement(ElementTemplate template, Document doc, String... values)
+   {
+      return template.newElement(doc, values);
+   }
 }
@@ -0,0 +1,527 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A streaming, namespace-correct DOM serializer: missing namespace declarations are added where needed.
+ * The DOM tree is walked iteratively; instances (and their character and encoding buffers) are pooled and reused.
+ * Byte output is UTF-8 encoded.
+ */
+final class DOMWriter
+{
+   private static final int BUFFER_SIZE = 8192;
+
+   private static final BlockingQueue<DOMWriter> pool = new ArrayBlockingQueue<DOMWriter>(Runtime.getRuntime().availableProcessors());
+
+   private final char[] chars = new char[BUFFER_SIZE];
+   private int pos;
+   private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 3);
+   private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+   // the namespace bindings in scope: prefixes / uris with the binding count at each element depth
+   private String[] prefixes = new String[16];
+   private String[] uris = new String[16];
+   private int bindings;
+   private int[] marks = new int[16];
+   private int depth;
+   private int generatedPrefixes;
+
+   // the current output: exactly one is not null
+   private Writer writer;
+   private OutputStream out;
+   private ByteBuffer target;
+
+   private DOMWriter()
+   {
+   }
+
+   static void write(Node node, Writer writer, boolean omitDeclaration) throws IOException
+   {
+      DOMWriter w = acquire();
+      try
+      {
+         w.writer = writer;
+         w.write(node, omitDeclaration ? null : "<?xml version=\"1.0\"?>");
+      }
+      finally
+      {
+         release(w);
+      }
+   }
+
+   static void write(Node node, OutputStream out, boolean omitDeclaration) throws IOException
+   {
+      DOMWriter w = acquire();
+      try
+      {
+         w.out = out;
+         w.write(node, omitDeclaration ? null : "<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      }
+      finally
+      {
+         release(w);
+      }
+   }
+
+   static void write(Node node, ByteBuffer target, boolean omitDeclaration) throws IOException
+   {
+      DOMWriter w = acquire();
+      try
+      {
+         w.target = target;
+         w.write(node, omitDeclaration ? null : "<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      }
+      finally
+      {
+         release(w);
+      }
+   }
+
+   private static DOMWriter acquire()
+   {
+      DOMWriter w = pool.poll();
+      return w != null ? w : new DOMWriter();
+   }
+
+   private static void release(DOMWriter w)
+   {
+      w.writer = null;
+      w.out = null;
+      w.target = null;
+      w.pos = 0;
+      w.bytes.clear();
+      w.encoder.reset();
+      w.bindings = 0;
+      w.depth = 0;
+      w.generatedPrefixes = 0;
+      pool.offer(w);
+   }
+
+   private void write(Node root, String declaration) throws IOException
+   {
+      if (declaration != null)
+         append(declaration);
+      Node node = root;
+      while (node != null)
+      {
+         Node child = start(node);
+         if (child != null)
+         {
+            node = child;
+            continue;
+         }
+         // no children to descend into: close the node and move to the next sibling or up to the parent
+         while (node != null)
+         {
+            end(node);
+            if (node == root)
+            {
+               node = null;
+            }
+            else if (node.getNextSibling() != null)
+            {
+               node = node.getNextSibling();
+               break;
+            }
+            else
+            {
+               node = node.getParentNode();
+            }
+         }
+      }
+      flush(true);
+   }
+
+   /**
+    * Write the beginning of the node
+    *
+    * @return the first child to descend into, if any
+    */
+   private Node start(Node node) throws IOException
+   {
+      switch (node.getNodeType())
+      {
+         case Node.ELEMENT_NODE:
+            startElement((Element) node);
+            return node.getFirstChild();
+         case Node.DOCUMENT_NODE:
+         case Node.DOCUMENT_FRAGMENT_NODE:
+            return node.getFirstChild();
+         case Node.TEXT_NODE:
+            appendEscaped(node.getNodeValue(), false);
+            break;
+         case Node.CDATA_SECTION_NODE:
+            append("<![CDATA[");
+            append(node.getNodeValue().replace("]]>", "]]]]><![CDATA[>"));
+            append("]]>");
+            break;
+         case Node.COMMENT_NODE:
+            append("<!--");
+            append(node.getNodeValue());
+            append("-->");
+            break;
+         case Node.PROCESSING_INSTRUCTION_NODE:
+            append("<?");
+            append(node.getNodeName());
+            String data = node.getNodeValue();
+            if (data != null && data.length() > 0)
+            {
+               append(' ');
+               append(data);
+            }
+            append("?>");
+            break;
+         case Node.ENTITY_REFERENCE_NODE:
+            append('&');
+            append(node.getNodeName());
+            append(';');
+            break;
+         case Node.DOCUMENT_TYPE_NODE:
+            writeDocumentType((DocumentType) node);
+            break;
+         default:
+            break;
+      }
+      return null;
+   }
+
+   private void end(Node node) throws IOException
+   {
+      if (node.getNodeType() == Node.ELEMENT_NODE)
+      {
+         if (node.getFirstChild() == null)
+         {
+            append("/>");
+         }
+         else
+         {
+            append("</");
+            append(node.getNodeName());
+            append('>');
+         }
+         bindings = marks[--depth];
+      }
+   }
+
+   private void startElement(Element element) throws IOException
+   {
+      if (depth == marks.length)
+      {
+         int[] m = new int[depth * 2];
+         System.arraycopy(marks, 0, m, 0, depth);
+         marks = m;
+      }
+      marks[depth++] = bindings;
+
+      append('<');
+      append(element.getNodeName());
+
+      NamedNodeMap attribs = element.getAttributes();
+      int len = attribs.getLength();
+      // explicit namespace declarations first
+      for (int i = 0; i < len; i++)
+      {
+         Attr attr = (Attr) attribs.item(i);
+         String name = attr.getName();
+         if (isNamespaceDeclaration(attr, name))
+         {
+            declare(name.length() > 5 ? name.substring(6) : "", attr.getValue());
+            writeAttribute(name, attr.getValue());
+         }
+      }
+      // namespace aware nodes: declare the element namespace if not in scope
+      if (element.getLocalName() != null)
+      {
+         String prefix = element.getPrefix();
+         ensureDeclared(prefix != null ? prefix : "", element.getNamespaceURI());
+      }
+      for (int i = 0; i < len; i++)
+      {
+         Attr attr = (Attr) attribs.item(i);
+         String name = attr.getName();
+         if (isNamespaceDeclaration(attr, name))
+            continue;
+         String ns = attr.getNamespaceURI();
+         if (ns != null && ns.length() > 0 && attr.getLocalName() != null && !XMLConstants.XML_NS_URI.equals(ns))
+         {
+            String prefix = attr.getPrefix();
+            if (prefix != null && prefix.length() > 0 && lookup(prefix) == null)
+            {
+               ensureDeclared(prefix, ns);
+            }
+            else if (prefix == null || prefix.length() == 0 || !ns.equals(lookup(prefix)))
+            {
+               prefix = lookupPrefix(ns);
+               if (prefix == null)
+               {
+                  prefix = "ns" + (++generatedPrefixes);
+                  while (lookup(prefix) != null)
+                     prefix = "ns" + (++generatedPrefixes);
+                  ensureDeclared(prefix, ns);
+               }
+               name = prefix + ":" + attr.getLocalName();
+            }
+         }
+         writeAttribute(name, attr.getValue());
+      }
+      if (element.getFirstChild() != null)
+         append('>');
+   }
+
+   private static boolean isNamespaceDeclaration(Attr attr, String name)
+   {
+      String ns = attr.getNamespaceURI();
+      if (ns != null)
+         return XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(ns);
+      return name.startsWith("xmlns") && (name.length() == 5 || name.charAt(5) == ':');
+   }
+
+   private void ensureDeclared(String prefix, String uri) throws IOException
+   {
+      String expected = uri != null ? uri : "";
+      if (XMLConstants.XML_NS_PREFIX.equals(prefix))
+         return;
+      String current = lookup(prefix);
+      if (!expected.equals(current != null ? current : ""))
+      {
+         declare(prefix, expected);
+         writeAttribute(prefix.length() > 0 ? "xmlns:" + prefix : "xmlns", expected);
+      }
+   }
+
+   private void declare(String prefix, String uri)
+   {
+      if (bindings == prefixes.length)
+      {
+         String[] p = new String[bindings * 2];
+         String[] u = new String[bindings * 2];
+         System.arraycopy(prefixes, 0, p, 0, bindings);
+         System.arraycopy(uris, 0, u, 0, bindings);
+         prefixes = p;
+         uris = u;
+      }
+      prefixes[bindings] = prefix;
+      uris[bindings++] = uri;
+   }
+
+   private String lookup(String prefix)
+   {
+      for (int i = bindings - 1; i >= 0; i--)
+      {
+         if (prefixes[i].equals(prefix))
+            return uris[i];
+      }
+      return null;
+   }
+
+   private String lookupPrefix(String uri)
+   {
+      for (int i = bindings - 1; i >= 0; i--)
+      {
+         String prefix = prefixes[i];
+         if (prefix.length() > 0 && uris[i].equals(uri) && uri.equals(lookup(prefix)))
+            return prefix;
+      }
+      return null;
+   }
+
+   private void writeAttribute(String name, String value) throws IOException
+   {
+      append(' ');
+      append(name);
+      append("=\"");
+      appendEscaped(value, true);
+      append('"');
+   }
+
+   private void writeDocumentType(DocumentType doctype) throws IOException
+   {
+      append("<!DOCTYPE ");
+      append(doctype.getName());
+      String publicId = doctype.getPublicId();
+      String systemId = doctype.getSystemId();
+      if (publicId != null)
+      {
+         append(" PUBLIC \"");
+         append(publicId);
+         append("\" \"");
+         append(systemId != null ? systemId : "");
+         append('"');
+      }
+      else if (systemId != null)
+      {
+         append(" SYSTEM \"");
+         append(systemId);
+         append('"');
+      }
+      String subset = doctype.getInternalSubset();
+      if (subset != null && subset.length() > 0)
+      {
+         append(" [");
+         append(subset);
+         append(']');
+      }
+      append('>');
+   }
+
+   private void appendEscaped(String s, boolean attribute) throws IOException
+   {
+      int len = s.length();
+      for (int i = 0; i < len; i++)
+      {
+         char c = s.charAt(i);
+         switch (c)
+         {
+            case '&':
+               append("&amp;");
+               break;
+            case '<':
+               append("&lt;");
+               break;
+            case '>':
+               append("&gt;");
+               break;
+            case '\r':
+               append("&#xD;");
+               break;
+            case '"':
+               if (attribute)
+                  append("&quot;");
+               else
+                  append(c);
+               break;
+            case '\n':
+               if (attribute)
+                  append("&#xA;");
+               else
+                  append(c);
+               break;
+            case '\t':
+               if (attribute)
+                  append("&#x9;");
+               else
+                  append(c);
+               break;
+            default:
+               append(c);
+         }
+      }
+   }
+
+   private void append(char c) throws IOException
+   {
+      if (pos == chars.length)
+         flush(false);
+      chars[pos++] = c;
+   }
+
+   private void append(String s) throws IOException
+   {
+      int len = s.length();
+      int off = 0;
+      while (off < len)
+      {
+         if (pos == chars.length)
+            flush(false);
+         int n = Math.min(len - off, chars.length - pos);
+         s.getChars(off, off + n, chars, pos);
+         pos += n;
+         off += n;
+      }
+   }
+
+   private void flush(boolean endOfInput) throws IOException
+   {
+      if (writer != null)
+      {
+         writer.write(chars, 0, pos);
+         pos = 0;
+         if (endOfInput)
+            writer.flush();
+         return;
+      }
+      CharBuffer in = CharBuffer.wrap(chars, 0, pos);
+      ByteBuffer dst = target != null ? target : bytes;
+      while (true)
+      {
+         CoderResult result = encoder.encode(in, dst, endOfInput);
+         if (result.isOverflow())
+         {
+            if (target != null)
+               throw new BufferOverflowException();
+            drain();
+         }
+         else if (result.isError())
+         {
+            result.throwException();
+         }
+         else
+         {
+            break;
+         }
+      }
+      if (endOfInput)
+      {
+         while (encoder.flush(dst).isOverflow())
+         {
+            if (target != null)
+               throw new BufferOverflowException();
+            drain();
+         }
+      }
+      // keep any unencoded trailing char (e.g. a high surrogate) for the next round
+      int remaining = in.remaining();
+      if (remaining > 0)
+         System.arraycopy(chars, in.position(), chars, 0, remaining);
+      pos = remaining;
+      if (target == null)
+      {
+         drain();
+         if (endOfInput)
+            out.flush();
+      }
+   }
+
+   private void drain() throws IOException
+   {
+      bytes.flip();
+      out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+      bytes.clear();
+   }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * A bounded pool of {@link DocumentBuilder} instances created by a given {@link DocumentBuilderFactory};
+ * allows concurrent parsing without sharing (and synchronizing on) a single builder.
+ * Acquiring a builder never blocks: a new one is created when no idle builder is available; released
+ * builders are reset and retained up to the configured maximum number of idle builders.
+ */
+public final class DocumentBuilderPool
+{
+   private final DocumentBuilderFactory factory;
+   private final BlockingQueue<DocumentBuilder> idle;
+
+   /**
+    * Constructor
+    *
+    * @param factory  the factory to create builders with
+    * @param maxIdle  the maximum number of idle builders retained by the pool
+    */
+   public DocumentBuilderPool(DocumentBuilderFactory factory, int maxIdle)
+   {
+      this.factory = factory;
+      this.idle = new ArrayBlockingQueue<DocumentBuilder>(maxIdle);
+   }
+
+   /**
+    * Constructor; the pool retains up to a number of idle builders equal to the available processors.
+    *
+    * @param factory  the factory to create builders with
+    */
+   public DocumentBuilderPool(DocumentBuilderFactory factory)
+   {
+      this(factory, Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * Get a builder for exclusive use, to be given back using {@link #release(DocumentBuilder)}
+    *
+    * @return  a builder
+    * @throws ParserConfigurationException  if a new builder cannot be created
+    */
+   public DocumentBuilder acquire() throws ParserConfigurationException
+   {
+      DocumentBuilder builder = idle.poll();
+      if (builder == null)
+      {
+         synchronized (factory) //DocumentBuilderFactory is not required to be thread-safe
+         {
+            builder = factory.newDocumentBuilder();
+         }
+      }
+      return builder;
+   }
+
+   /**
+    * Give back a builder previously obtained through {@link #acquire()}
+    *
+    * @param builder  the builder
+    */
+   public void release(DocumentBuilder builder)
+   {
+      builder.reset();
+      idle.offer(builder);
+   }
+}
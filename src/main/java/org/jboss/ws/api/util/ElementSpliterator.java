@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import javax.xml.namespace.QName;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A lazy {@link Spliterator} over the elements of a range of sibling nodes and, optionally, over their descendants
+ * (in document order); the DOM tree is walked on demand without collecting the elements.
+ * Splitting hands out half of the remaining sibling subtrees or, when a single subtree is left, its children.
+ */
+final class ElementSpliterator implements Spliterator<Element>
+{
+   private final QName nodeName;
+   private final boolean recursive;
+   /** the current top level sibling */
+   private Node current;
+   /** the top level sibling where this spliterator stops (exclusive), null for the last sibling */
+   private final Node fence;
+   /** the last visited element in the current top level subtree, null if the subtree has not been entered yet */
+   private Element cursor;
+
+   /**
+    * Constructor
+    *
+    * @param first  the first top level sibling node
+    * @param fence  the top level sibling node to stop at (exclusive), null to process all following siblings
+    * @param nodeName  the name of the elements to return, null to return all elements
+    * @param recursive  whether to descend into the top level elements
+    */
+   ElementSpliterator(Node first, Node fence, QName nodeName, boolean recursive)
+   {
+      this.current = first;
+      this.fence = fence;
+      this.nodeName = nodeName;
+      this.recursive = recursive;
+   }
+
+   public boolean tryAdvance(Consumer<? super Element> action)
+   {
+      Element element = next();
+      if (element == null)
+         return false;
+      action.accept(element);
+      return true;
+   }
+
+   /**
+    * Get the next matching element; the traversal is iterative, regardless of the tree depth
+    *
+    * @return  the next matching element, null if there are no more
+    */
+   Element next()
+   {
+      while (true)
+      {
+         if (cursor == null)
+         {
+            current = nextElementSibling(current);
+            if (current == null)
+               return null;
+            cursor = (Element) current;
+         }
+         else
+         {
+            cursor = recursive ? nextInSubtree(cursor) : null;
+            if (cursor == null)
+            {
+               current = current.getNextSibling();
+               continue;
+            }
+         }
+         if (DOMUtils.matches(cursor, nodeName))
+         {
+            return cursor;
+         }
+      }
+   }
+
+   public Spliterator<Element> trySplit()
+   {
+      if (cursor == null)
+      {
+         Node first = nextElementSibling(current);
+         if (first == null)
+            return null;
+         int count = 0;
+         for (Node n = first; n != null; n = nextElementSibling(n.getNextSibling()))
+            count++;
+         if (count > 1)
+         {
+            Node mid = first;
+            for (int i = 0; i < count / 2; i++)
+               mid = nextElementSibling(mid.getNextSibling());
+            current = mid;
+            return new ElementSpliterator(first, mid, nodeName, recursive);
+         }
+         return null;
+      }
+      else if (recursive && cursor == current && current.getFirstChild() != null)
+      {
+         //the root of the current subtree has already been returned, split its descendants off
+         Spliterator<Element> prefix = new ElementSpliterator(current.getFirstChild(), null, nodeName, true);
+         current = current.getNextSibling();
+         cursor = null;
+         return prefix;
+      }
+      return null;
+   }
+
+   public long estimateSize()
+   {
+      return Long.MAX_VALUE;
+   }
+
+   public int characteristics()
+   {
+      return ORDERED | NONNULL;
+   }
+
+   private Node nextElementSibling(Node node)
+   {
+      while (node != null && node != fence && node.getNodeType() != Node.ELEMENT_NODE)
+         node = node.getNextSibling();
+      return node == fence ? null : node;
+   }
+
+   private Element nextInSubtree(Element element)
+   {
+      Element child = firstElement(element.getFirstChild());
+      if (child != null)
+         return child;
+      for (Node node = element; node != current; node = node.getParentNode())
+      {
+         Element sibling = firstElement(node.getNextSibling());
+         if (sibling != null)
+            return sibling;
+      }
+      return null;
+   }
+
+   private static Element firstElement(Node node)
+   {
+      while (node != null && node.getNodeType() != Node.ELEMENT_NODE)
+         node = node.getNextSibling();
+      return (Element) node;
+   }
+}
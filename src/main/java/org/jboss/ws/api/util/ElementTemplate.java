@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.jboss.ws.api.Messages.MESSAGES;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A prototype element subtree that is built once and then imported into target documents, with only its
+ * variable parts filled in; this saves the name checks and string concatenations of building the same
+ * elements (e.g. addressing or security header blocks) from scratch for every message.
+ * The variable parts are the text nodes and attribute values consisting of a single <code>${name}</code>
+ * placeholder; placeholders are numbered in document order of their first occurrence, and occurrences
+ * sharing the same name receive the same value. Templates are immutable and thread-safe.
+ */
+public final class ElementTemplate
+{
+   private static final String PLACEHOLDER_START = "${";
+   private static final String PLACEHOLDER_END = "}";
+
+   private final Element prototype;
+   private final List<String> names;
+   private final Slot[] slots;
+
+   /**
+    * Constructor; the given element is copied, hence it can be freely modified afterwards.
+    *
+    * @param prototype  the prototype element, including placeholders
+    */
+   public ElementTemplate(Element prototype)
+   {
+      Document doc = prototype.getOwnerDocument().getImplementation().createDocument(null, null, null);
+      this.prototype = (Element) doc.appendChild(doc.importNode(prototype, true));
+      List<String> names = new ArrayList<String>();
+      List<Slot> slots = new ArrayList<Slot>();
+      collectSlots(this.prototype, new int[0], names, slots);
+      this.names = Collections.unmodifiableList(names);
+      this.slots = slots.toArray(new Slot[slots.size()]);
+   }
+
+   /**
+    * Create a template by parsing the given XML string
+    *
+    * @param xmlString  the prototype element, including placeholders
+    * @return  the template
+    * @throws IOException  exception
+    */
+   public static ElementTemplate parse(String xmlString) throws IOException
+   {
+      return new ElementTemplate(DOMUtils.parse(xmlString, DOMUtils.getDocumentBuilderPool()));
+   }
+
+   /**
+    * @return  the placeholder names, in the order their values are expected
+    */
+   public List<String> getPlaceholderNames()
+   {
+      return names;
+   }
+
+   /**
+    * Create a new element owned by the given document, replacing the placeholders with the given values;
+    * the element is not appended to the document.
+    *
+    * @param doc     the target document
+    * @param values  the placeholder values, in the order of {@link #getPlaceholderNames()}; null means empty
+    * @return  the element
+    */
+   public Element newElement(Document doc, String... values)
+   {
+      if (values.length != names.size())
+      {
+         throw MESSAGES.illegalTemplateValues(prototype.getNodeName(), names.size(), values.length);
+      }
+      Element element;
+      synchronized (prototype) //DOM implementations are not required to be thread-safe, even for reads
+      {
+         //cloning within the prototype document and adopting the copy skips the name checks importing
+         //would go through; fall back to importing when the target document does not support adoption
+         element = (Element) prototype.cloneNode(true);
+         if (doc.adoptNode(element) == null)
+         {
+            element = (Element) doc.importNode(prototype, true);
+         }
+      }
+      for (Slot slot : slots)
+      {
+         String value = values[slot.valueIndex];
+         slot.fill(element, value != null ? value : "");
+      }
+      return element;
+   }
+
+   private static void collectSlots(Element element, int[] path, List<String> names, List<Slot> slots)
+   {
+      NamedNodeMap attributes = element.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++)
+      {
+         Attr attr = (Attr) attributes.item(i);
+         String name = getPlaceholderName(attr.getValue());
+         if (name != null)
+         {
+            slots.add(new Slot(path, attr, indexOf(name, names)));
+         }
+      }
+      int index = 0;
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling(), index++)
+      {
+         int[] childPath = new int[path.length + 1];
+         System.arraycopy(path, 0, childPath, 0, path.length);
+         childPath[path.length] = index;
+         if (child instanceof Element)
+         {
+            collectSlots((Element) child, childPath, names, slots);
+         }
+         else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE)
+         {
+            String name = getPlaceholderName(((CharacterData) child).getData());
+            if (name != null)
+            {
+               slots.add(new Slot(childPath, null, indexOf(name, names)));
+            }
+         }
+      }
+   }
+
+   private static String getPlaceholderName(String value)
+   {
+      if (value.startsWith(PLACEHOLDER_START) && value.endsWith(PLACEHOLDER_END)
+            && value.length() > PLACEHOLDER_START.length() + PLACEHOLDER_END.length())
+      {
+         return value.substring(PLACEHOLDER_START.length(), value.length() - PLACEHOLDER_END.length());
+      }
+      return null;
+   }
+
+   private static int indexOf(String name, List<String> names)
+   {
+      int index = names.indexOf(name);
+      if (index < 0)
+      {
+         index = names.size();
+         names.add(name);
+      }
+      return index;
+   }
+
+   /**
+    * The location of a placeholder: the child index path from the template root to the text node,
+    * or to the owner element of the attribute
+    */
+   private static final class Slot
+   {
+      private final int[] path;
+      private final String attrNamespace;
+      private final String attrName;
+      private final boolean attrNS;
+      final int valueIndex;
+
+      Slot(int[] path, Attr attr, int valueIndex)
+      {
+         this.path = path;
+         this.valueIndex = valueIndex;
+         if (attr != null)
+         {
+            this.attrNS = attr.getLocalName() != null;
+            this.attrNamespace = attr.getNamespaceURI();
+            this.attrName = attrNS ? attr.getLocalName() : attr.getName();
+         }
+         else
+         {
+            this.attrNS = false;
+            this.attrNamespace = null;
+            this.attrName = null;
+         }
+      }
+
+      void fill(Element root, String value)
+      {
+         Node node = root;
+         for (int index : path)
+         {
+            node = node.getFirstChild();
+            for (int i = 0; i < index; i++)
+            {
+               node = node.getNextSibling();
+            }
+         }
+         if (attrName == null)
+         {
+            ((CharacterData) node).setData(value);
+         }
+         else
+         {
+            Element element = (Element) node;
+            Attr attr = attrNS ? element.getAttributeNodeNS(attrNamespace, attrName) : element.getAttributeNode(attrName);
+            attr.setValue(value);
+         }
+      }
+   }
+}
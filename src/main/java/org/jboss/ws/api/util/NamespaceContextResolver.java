@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.jboss.ws.api.Messages.MESSAGES;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * Resolves qualified names the same way {@link DOMUtils#resolveQName(Element, String)} does, caching the
+ * namespace declarations in scope for each visited element, so that repeated resolutions within the same
+ * document do not walk the ancestor chain again. Elements not declaring any namespace share the scope of
+ * their parent; prefixes redeclared deeper in the tree get a new scope.
+ * <p>
+ * Instances are not thread-safe and assume the namespace declarations of the visited elements are not
+ * modified while in use.
+ * </p>
+ */
+public final class NamespaceContextResolver
+{
+   private final Map<Element, Map<String, String>> scopes = new IdentityHashMap<Element, Map<String, String>>();
+
+   /** Transform the given qualified name into a QName
+    *
+    * @param el  node
+    * @param qualifiedName  qualified name
+    * @return  QName
+    */
+   public QName resolveQName(Element el, String qualifiedName)
+   {
+      String prefix = "";
+      String localPart = qualifiedName;
+      String namespaceURI;
+
+      int colIndex = qualifiedName.indexOf(':');
+      if (colIndex > 0)
+      {
+         prefix = qualifiedName.substring(0, colIndex);
+         localPart = qualifiedName.substring(colIndex + 1);
+
+         if ("xmlns".equals(prefix))
+         {
+            namespaceURI = DOMUtils.XML_PREDEFINED_NAMESPACE;
+         }
+         else
+         {
+            namespaceURI = getNamespaceURI(el, prefix);
+            if (namespaceURI == null)
+               namespaceURI = el.getNamespaceURI();
+            if (namespaceURI == null || namespaceURI.length() == 0)
+               throw MESSAGES.cannotFindNamespaceURI(qualifiedName);
+         }
+      }
+      else
+      {
+         namespaceURI = getNamespaceURI(el, "");
+         if (namespaceURI == null)
+            namespaceURI = "";
+      }
+
+      return new QName(namespaceURI, localPart, prefix);
+   }
+
+   /**
+    * Get the namespace URI bound to the given prefix in the scope of the given element
+    *
+    * @param el  node
+    * @param prefix  prefix, the empty string for the default namespace
+    * @return  the namespace URI, null if the prefix is not bound
+    */
+   public String getNamespaceURI(Element el, String prefix)
+   {
+      return getScope(el).get(prefix);
+   }
+
+   private Map<String, String> getScope(Element el)
+   {
+      Map<String, String> scope = scopes.get(el);
+      if (scope != null)
+         return scope;
+
+      Deque<Element> path = new ArrayDeque<Element>();
+      Element element = el;
+      while (element != null && (scope = scopes.get(element)) == null)
+      {
+         path.push(element);
+         element = DOMUtils.getParentElement(element);
+      }
+      if (scope == null)
+         scope = Collections.emptyMap();
+
+      while (!path.isEmpty())
+      {
+         element = path.pop();
+         scope = declare(scope, element);
+         scopes.put(element, scope);
+      }
+      return scope;
+   }
+
+   private static Map<String, String> declare(Map<String, String> parentScope, Element el)
+   {
+      Map<String, String> scope = parentScope;
+      NamedNodeMap attribs = el.getAttributes();
+      int len = attribs.getLength();
+      for (int i = 0; i < len; i++)
+      {
+         Attr attr = (Attr) attribs.item(i);
+         String name = attr.getName();
+         String prefix;
+         if (name.equals("xmlns"))
+            prefix = "";
+         else if (name.startsWith("xmlns:"))
+            prefix = name.substring(6);
+         else
+            continue;
+
+         // empty declarations are skipped, consistently with DOMUtils.resolveQName
+         String value = attr.getValue();
+         if (value.length() > 0)
+         {
+            if (scope == parentScope)
+               scope = new HashMap<String, String>(parentScope);
+            scope.put(prefix, value);
+         }
+      }
+      return scope;
+   }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * A cache of parsed XML fragments, keyed by a hash of their content and verified against the
+ * content itself; meant for inputs that are parsed over and over again, like policy attachments,
+ * endpoint reference metadata or configuration fragments.
+ * Each lookup returns the root element of a fresh deep copy of the cached document, which callers
+ * are free to modify. The cache is bounded by the estimated heap retained by the cached entries (the
+ * cached tree and the input kept for verification) and evicts the least recently used entries first;
+ * inputs longer than a given threshold are parsed but never cached.
+ * A cache is expected to be used with equally configured document builders.
+ */
+public final class ParseCache
+{
+   /**
+    * The estimated heap retained by a cached tree, in bytes: per document, per node, per attribute (including
+    * the attribute map entry) and per character of text and attribute values, assuming compact (Latin-1)
+    * strings; measured on non-deferred Xerces trees, non Latin-1 text is underestimated.
+    */
+   private static final int DOCUMENT_SIZE = 256;
+   private static final int NODE_SIZE = 100;
+   private static final int ATTRIBUTE_SIZE = 120;
+   private static final int STRING_SIZE = 40;
+
+   private final long maxTotalSize;
+   private final int maxInputLength;
+   private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+   private long totalSize;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder evictions = new LongAdder();
+   private final LongAdder uncached = new LongAdder();
+
+   /**
+    * Constructor
+    *
+    * @param maxTotalSize    the maximum estimated heap, in bytes, retained by the cached entries
+    * @param maxInputLength  the length, in characters, above which inputs are not cached
+    */
+   public ParseCache(long maxTotalSize, int maxInputLength)
+   {
+      this.maxTotalSize = maxTotalSize;
+      this.maxInputLength = maxInputLength;
+   }
+
+   /**
+    * Parse the given XML characters and return the root Element, reusing the result of a previous
+    * parse of the same content when available
+    *
+    * @param xmlChars    characters to be parsed
+    * @param builder     document builder, only used on cache misses
+    * @return    the root element of a document owned by the caller
+    * @throws IOException    exception
+    */
+   public Element parse(CharSequence xmlChars, DocumentBuilder builder) throws IOException
+   {
+      Long key = key(xmlChars);
+      Document doc = lookup(key, xmlChars);
+      if (doc != null)
+      {
+         return doc.getDocumentElement();
+      }
+      Element root = DOMUtils.parse(xmlChars, builder);
+      store(key, xmlChars, root);
+      return root;
+   }
+
+   /**
+    * Parse the given XML characters and return the root Element, reusing the result of a previous
+    * parse of the same content when available
+    *
+    * @param xmlChars    characters to be parsed
+    * @param pool        document builder pool, only used on cache misses
+    * @return    the root element of a document owned by the caller
+    * @throws IOException    exception
+    */
+   public Element parse(CharSequence xmlChars, DocumentBuilderPool pool) throws IOException
+   {
+      Long key = key(xmlChars);
+      Document doc = lookup(key, xmlChars);
+      if (doc != null)
+      {
+         return doc.getDocumentElement();
+      }
+      Element root = DOMUtils.parse(new InputSource(new CharSequenceReader(xmlChars)), pool);
+      store(key, xmlChars, root);
+      return root;
+   }
+
+   /**
+    * Get the cache key of the given characters, computing their hash once per parse
+    *
+    * @return  the key, null if the input is not to be cached
+    */
+   private Long key(CharSequence xmlChars)
+   {
+      if (xmlChars.length() > maxInputLength)
+      {
+         uncached.increment();
+         return null;
+      }
+      return hash(xmlChars);
+   }
+
+   private Document lookup(Long key, CharSequence xmlChars)
+   {
+      if (key == null)
+      {
+         return null;
+      }
+      Entry entry;
+      synchronized (entries)
+      {
+         entry = entries.get(key);
+      }
+      if (entry == null || !entry.matches(xmlChars))
+      {
+         misses.increment();
+         return null;
+      }
+      hits.increment();
+      return entry.copy();
+   }
+
+   private void store(Long key, CharSequence xmlChars, Element root)
+   {
+      if (key == null)
+      {
+         return;
+      }
+      //cache a private copy, as the parsed document is handed over to the caller
+      Document copy = (Document) root.getOwnerDocument().cloneNode(true);
+      long size = STRING_SIZE + xmlChars.length() + estimateSize(copy);
+      if (size > maxTotalSize)
+      {
+         uncached.increment();
+         return;
+      }
+      Entry entry = new Entry(xmlChars.toString(), copy, size);
+      synchronized (entries)
+      {
+         Entry previous = entries.put(key, entry);
+         if (previous != null)
+         {
+            totalSize -= previous.size;
+         }
+         totalSize += size;
+         Iterator<Entry> it = entries.values().iterator();
+         while (totalSize > maxTotalSize && it.hasNext())
+         {
+            totalSize -= it.next().size;
+            it.remove();
+            evictions.increment();
+         }
+      }
+   }
+
+   /**
+    * Estimate the heap retained by the given (not yet shared) document, walking the whole tree
+    */
+   private static long estimateSize(Document doc)
+   {
+      long size = DOCUMENT_SIZE;
+      Node node = doc.getFirstChild();
+      while (node != null)
+      {
+         size += NODE_SIZE;
+         if (node instanceof CharacterData)
+         {
+            size += STRING_SIZE + ((CharacterData) node).getLength();
+         }
+         else if (node.getNodeType() == Node.ELEMENT_NODE)
+         {
+            NamedNodeMap attributes = node.getAttributes();
+            for (int i = 0, n = attributes.getLength(); i < n; i++)
+            {
+               size += ATTRIBUTE_SIZE + attributes.item(i).getNodeValue().length();
+            }
+         }
+         Node next = node.getFirstChild();
+         while (next == null && node != null)
+         {
+            next = node.getNextSibling();
+            if (next == null)
+            {
+               node = node.getParentNode();
+            }
+         }
+         node = next;
+      }
+      return size;
+   }
+
+   /**
+    * 64-bit FNV-1a hash of the given characters
+    */
+   private static Long hash(CharSequence chars)
+   {
+      long h = 0xcbf29ce484222325L;
+      for (int i = 0, n = chars.length(); i < n; i++)
+      {
+         h = (h ^ chars.charAt(i)) * 0x100000001b3L;
+      }
+      return h;
+   }
+
+   /**
+    * Remove all the cached entries
+    */
+   public void clear()
+   {
+      synchronized (entries)
+      {
+         entries.clear();
+         totalSize = 0;
+      }
+   }
+
+   /**
+    * @return  the number of cached entries
+    */
+   public int size()
+   {
+      synchronized (entries)
+      {
+         return entries.size();
+      }
+   }
+
+   /**
+    * @return  the estimated heap, in bytes, retained by the cached entries
+    */
+   public long getTotalSize()
+   {
+      synchronized (entries)
+      {
+         return totalSize;
+      }
+   }
+
+   /**
+    * @return  the number of lookups served from the cache
+    */
+   public long getHits()
+   {
+      return hits.sum();
+   }
+
+   /**
+    * @return  the number of lookups that required parsing, excluding inputs above the size threshold
+    */
+   public long getMisses()
+   {
+      return misses.sum();
+   }
+
+   /**
+    * @return  the number of entries evicted to stay within the configured bound
+    */
+   public long getEvictions()
+   {
+      return evictions.sum();
+   }
+
+   /**
+    * @return  the number of inputs parsed without caching because of their length or the estimated size of their tree
+    */
+   public long getUncached()
+   {
+      return uncached.sum();
+   }
+
+   private static final class Entry
+   {
+      final String source;
+      final long size;
+      private final Document document;
+
+      Entry(String source, Document document, long size)
+      {
+         this.source = source;
+         this.document = document;
+         this.size = size;
+      }
+
+      boolean matches(CharSequence chars)
+      {
+         return source.contentEquals(chars);
+      }
+
+      Document copy()
+      {
+         synchronized (document) //DOM implementations are not required to be thread-safe, even for reads
+         {
+            return (Document) document.cloneNode(true);
+         }
+      }
+   }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.io.IOException;
+
+/**
+ * Signals that a parse has been aborted because the input exceeded one of the configured {@link ParseLimits}
+ */
+public class ParseLimitExceededException extends IOException
+{
+   private static final long serialVersionUID = 1L;
+
+   private final ParseLimits.Limit limit;
+
+   /**
+    * Constructor
+    *
+    * @param limit    the exceeded limit
+    * @param message  the detail message
+    */
+   public ParseLimitExceededException(ParseLimits.Limit limit, String message)
+   {
+      super(message);
+      this.limit = limit;
+   }
+
+   /**
+    * Get the limit that has been exceeded
+    *
+    * @return  the limit
+    */
+   public ParseLimits.Limit getLimit()
+   {
+      return limit;
+   }
+}
@@ -0,0 +1,481 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.jboss.ws.api.Messages.MESSAGES;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * Resource limits enforced while parsing untrusted XML: the total input size, the element depth, the
+ * attributes per element and the length of text nodes. The parse is aborted with a
+ * {@link ParseLimitExceededException} as soon as a limit is found to be exceeded, before the offending
+ * content is added to the tree: input size and text length are checked as the input is read, element
+ * depth and attribute count once a start tag has been read. Aborted parses are counted. Instances are
+ * immutable apart from the counter and can be shared by concurrent parses.
+ * <p>
+ * Despite its name, the {@link Limit#BYTES} limit counts what the input is made of: bytes when it is
+ * a byte stream, but characters when it is a character stream (or a string), so the same document can be
+ * accepted as characters and rejected as UTF-8 encoded bytes. Attribute values and processing instruction
+ * data are not subject to the text length limit: their size is bounded by that total input size only.
+ *
+ * @see DOMUtils#parse(InputSource, ParseLimits)
+ */
+public final class ParseLimits
+{
+   /**
+    * The kinds of limit
+    */
+   public enum Limit
+   {
+      /** total input size, in bytes for byte streams and in characters for character streams */
+      BYTES,
+      /** element nesting depth, the document element being at depth 1 */
+      DEPTH,
+      /** attributes per element, namespace declarations included */
+      ATTRIBUTES,
+      /** characters in a single text node, CDATA section or comment; attribute values are not included */
+      TEXT_LENGTH
+   }
+
+   private final long maxBytes;
+   private final int maxDepth;
+   private final int maxAttributes;
+   private final int maxTextLength;
+
+   private final LongAdder aborts = new LongAdder();
+
+   /**
+    * Constructor; zero or negative values disable the corresponding limit
+    *
+    * @param maxBytes       the maximum total input size, in bytes or in characters depending on the input
+    * @param maxDepth       the maximum element depth
+    * @param maxAttributes  the maximum number of attributes per element
+    * @param maxTextLength  the maximum length of a text node
+    */
+   public ParseLimits(long maxBytes, int maxDepth, int maxAttributes, int maxTextLength)
+   {
+      this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+      this.maxDepth = maxDepth > 0 ? maxDepth : Integer.MAX_VALUE;
+      this.maxAttributes = maxAttributes > 0 ? maxAttributes : Integer.MAX_VALUE;
+      this.maxTextLength = maxTextLength > 0 ? maxTextLength : Integer.MAX_VALUE;
+   }
+
+   /**
+    * @return  the maximum total input size, in bytes for byte streams and in characters for character streams,
+    *          {@link Long#MAX_VALUE} when unlimited
+    */
+   public long getMaxBytes()
+   {
+      return maxBytes;
+   }
+
+   /**
+    * @return  the maximum element depth, {@link Integer#MAX_VALUE} when unlimited
+    */
+   public int getMaxDepth()
+   {
+      return maxDepth;
+   }
+
+   /**
+    * @return  the maximum number of attributes per element, {@link Integer#MAX_VALUE} when unlimited
+    */
+   public int getMaxAttributes()
+   {
+      return maxAttributes;
+   }
+
+   /**
+    * @return  the maximum length of a text node, {@link Integer#MAX_VALUE} when unlimited
+    */
+   public int getMaxTextLength()
+   {
+      return maxTextLength;
+   }
+
+   /**
+    * Get the number of parses aborted because of these limits
+    *
+    * @return  the number of aborted parses
+    */
+   public long getAborts()
+   {
+      return aborts.sum();
+   }
+
+   /**
+    * Parse the given source with the given reader, enforcing these limits and forwarding the events
+    * to the given handler
+    *
+    * @param reader   the reader, whose content and lexical handlers are replaced
+    * @param source   the input source; only byte and character streams are subject to the size limit
+    * @param handler  the handler
+    * @throws IOException   if a limit is exceeded (as a {@link ParseLimitExceededException}) or the input cannot be read
+    * @throws SAXException  if the input cannot be parsed
+    */
+   <H extends ContentHandler & LexicalHandler> void parse(XMLReader reader, InputSource source, H handler) throws IOException, SAXException
+   {
+      LimitHandler limitHandler = new LimitHandler(handler, handler);
+      reader.setContentHandler(limitHandler);
+      reader.setProperty(XMLFactories.LEXICAL_HANDLER, limitHandler);
+      try
+      {
+         reader.parse(limit(source));
+      }
+      catch (SAXException se)
+      {
+         if (se.getException() instanceof ParseLimitExceededException)
+         {
+            throw (ParseLimitExceededException) se.getException();
+         }
+         throw se;
+      }
+   }
+
+   /**
+    * Check the size of an input that is available as a whole, before parsing it
+    *
+    * @param size  the input size
+    * @throws ParseLimitExceededException  if the input is too large
+    */
+   void checkSize(long size) throws ParseLimitExceededException
+   {
+      if (size > maxBytes)
+      {
+         throw exceeded(Limit.BYTES, maxBytes);
+      }
+   }
+
+   private InputSource limit(InputSource source)
+   {
+      if (maxBytes == Long.MAX_VALUE)
+      {
+         return source;
+      }
+      InputSource limited = new InputSource(source.getSystemId());
+      limited.setPublicId(source.getPublicId());
+      limited.setEncoding(source.getEncoding());
+      if (source.getCharacterStream() != null)
+      {
+         limited.setCharacterStream(new LimitedReader(source.getCharacterStream()));
+      }
+      else if (source.getByteStream() != null)
+      {
+         limited.setByteStream(new LimitedInputStream(source.getByteStream()));
+      }
+      return limited;
+   }
+
+   private ParseLimitExceededException exceeded(Limit limit, long max)
+   {
+      aborts.increment();
+      return new ParseLimitExceededException(limit, MESSAGES.parseLimitExceeded(limit.name(), max));
+   }
+
+   private final class LimitedInputStream extends FilterInputStream
+   {
+      private long count;
+
+      LimitedInputStream(InputStream in)
+      {
+         super(in);
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int b = super.read();
+         if (b != -1)
+         {
+            count(1);
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException
+      {
+         int n = super.read(b, off, len);
+         if (n > 0)
+         {
+            count(n);
+         }
+         return n;
+      }
+
+      @Override
+      public long skip(long n) throws IOException
+      {
+         long skipped = super.skip(n);
+         count(skipped);
+         return skipped;
+      }
+
+      @Override
+      public boolean markSupported()
+      {
+         return false;
+      }
+
+      private void count(long n) throws ParseLimitExceededException
+      {
+         count += n;
+         if (count > maxBytes)
+         {
+            throw exceeded(Limit.BYTES, maxBytes);
+         }
+      }
+   }
+
+   private final class LimitedReader extends FilterReader
+   {
+      private long count;
+
+      LimitedReader(Reader in)
+      {
+         super(in);
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int c = super.read();
+         if (c != -1)
+         {
+            count(1);
+         }
+         return c;
+      }
+
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException
+      {
+         int n = super.read(cbuf, off, len);
+         if (n > 0)
+         {
+            count(n);
+         }
+         return n;
+      }
+
+      @Override
+      public long skip(long n) throws IOException
+      {
+         long skipped = super.skip(n);
+         count(skipped);
+         return skipped;
+      }
+
+      @Override
+      public boolean markSupported()
+      {
+         return false;
+      }
+
+      private void count(long n) throws ParseLimitExceededException
+      {
+         count += n;
+         if (count > maxBytes)
+         {
+            throw exceeded(Limit.BYTES, maxBytes);
+         }
+      }
+   }
+
+   /**
+    * Checks the structural limits on the parse events and forwards them; adjacent character events
+    * are accounted to the same text node.
+    */
+   private final class LimitHandler implements ContentHandler, LexicalHandler
+   {
+      private final ContentHandler contentHandler;
+      private final LexicalHandler lexicalHandler;
+      private int depth;
+      private int prefixMappings;
+      private long textLength;
+
+      LimitHandler(ContentHandler contentHandler, LexicalHandler lexicalHandler)
+      {
+         this.contentHandler = contentHandler;
+         this.lexicalHandler = lexicalHandler;
+      }
+
+      private SAXException abort(Limit limit, long max)
+      {
+         return new SAXException(exceeded(limit, max));
+      }
+
+      @Override
+      public void setDocumentLocator(Locator locator)
+      {
+         contentHandler.setDocumentLocator(locator);
+      }
+
+      @Override
+      public void startDocument() throws SAXException
+      {
+         contentHandler.startDocument();
+      }
+
+      @Override
+      public void endDocument() throws SAXException
+      {
+         contentHandler.endDocument();
+      }
+
+      @Override
+      public void startPrefixMapping(String prefix, String uri) throws SAXException
+      {
+         if (++prefixMappings > maxAttributes)
+         {
+            throw abort(Limit.ATTRIBUTES, maxAttributes);
+         }
+         contentHandler.startPrefixMapping(prefix, uri);
+      }
+
+      @Override
+      public void endPrefixMapping(String prefix) throws SAXException
+      {
+         contentHandler.endPrefixMapping(prefix);
+      }
+
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+      {
+         if (++depth > maxDepth)
+         {
+            throw abort(Limit.DEPTH, maxDepth);
+         }
+         if (atts.getLength() + prefixMappings > maxAttributes)
+         {
+            throw abort(Limit.ATTRIBUTES, maxAttributes);
+         }
+         prefixMappings = 0;
+         textLength = 0;
+         contentHandler.startElement(uri, localName, qName, atts);
+      }
+
+      @Override
+      public void endElement(String uri, String localName, String qName) throws SAXException
+      {
+         depth--;
+         textLength = 0;
+         contentHandler.endElement(uri, localName, qName);
+      }
+
+      @Override
+      public void characters(char[] ch, int start, int length) throws SAXException
+      {
+         checkText(length);
+         contentHandler.characters(ch, start, length);
+      }
+
+      @Override
+      public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+      {
+         checkText(length);
+         contentHandler.ignorableWhitespace(ch, start, length);
+      }
+
+      @Override
+      public void processingInstruction(String target, String data) throws SAXException
+      {
+         textLength = 0;
+         contentHandler.processingInstruction(target, data);
+      }
+
+      @Override
+      public void skippedEntity(String name) throws SAXException
+      {
+         contentHandler.skippedEntity(name);
+      }
+
+      @Override
+      public void startDTD(String name, String publicId, String systemId) throws SAXException
+      {
+         lexicalHandler.startDTD(name, publicId, systemId);
+      }
+
+      @Override
+      public void endDTD() throws SAXException
+      {
+         lexicalHandler.endDTD();
+      }
+
+      @Override
+      public void startEntity(String name) throws SAXException
+      {
+         lexicalHandler.startEntity(name);
+      }
+
+      @Override
+      public void endEntity(String name) throws SAXException
+      {
+         lexicalHandler.endEntity(name);
+      }
+
+      @Override
+      public void startCDATA() throws SAXException
+      {
+         textLength = 0;
+         lexicalHandler.startCDATA();
+      }
+
+      @Override
+      public void endCDATA() throws SAXException
+      {
+         textLength = 0;
+         lexicalHandler.endCDATA();
+      }
+
+      @Override
+      public void comment(char[] ch, int start, int length) throws SAXException
+      {
+         if (length > maxTextLength)
+         {
+            throw abort(Limit.TEXT_LENGTH, maxTextLength);
+         }
+         textLength = 0;
+         lexicalHandler.comment(ch, start, length);
+      }
+
+      private void checkText(int length) throws SAXException
+      {
+         textLength += length;
+         if (textLength > maxTextLength)
+         {
+            throw abort(Limit.TEXT_LENGTH, maxTextLength);
+         }
+      }
+   }
+}
@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.jboss.ws.api.Messages.MESSAGES;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A set of compiled absolute path expressions, all evaluated together in a single walk of the DOM tree.
+ * Expressions are slash separated element steps, like <code>/Envelope/Header/{wsa}To</code>:
+ * <ul>
+ * <li><code>name</code> matches elements with the given local name, in any namespace</li>
+ * <li><code>{ns}name</code> matches elements with the given local name and namespace, <code>ns</code>
+ * being either a prefix of the provided namespace map or the namespace uri itself</li>
+ * <li><code>{}name</code> matches elements with the given local name and no namespace</li>
+ * <li><code>*</code>, <code>{ns}*</code> or <code>{}*</code> match any element, optionally in the given
+ * namespace or in no namespace</li>
+ * </ul>
+ * Names are local names: prefixed names like <code>soap:Body</code> are rejected, namespaces being given
+ * in braces instead. The first step matches the evaluation root. Expressions sharing leading steps share their evaluation,
+ * and only the elements matching some expression prefix are visited. {@link #evaluateFirst(Node)} also
+ * stops walking as soon as every expression has a match; {@link #evaluate(Node)} collects all the matches,
+ * visiting every element matching some expression prefix.
+ * <p>
+ * Every visited element is compared with each of the next steps, so this is not a faster replacement for a
+ * few chained {@link DOMUtils#getFirstChildElement(Node, javax.xml.namespace.QName)} calls, which are cheaper
+ * on small trees; it saves repeated lookups and parsing of the expressions when many paths are read together.
+ * Instances are immutable and thread-safe; obtain them through {@link DOMUtils#compilePaths(Map, String...)}.
+ */
+public final class PathQuery
+{
+   private static final String WILDCARD = "*";
+
+   /** the namespace of steps matching elements in no namespace, compared by identity */
+   private static final String NO_NAMESPACE = new String("");
+
+   private final List<String> paths;
+   private final Step root;
+
+   PathQuery(Map<String, String> namespaces, String... paths)
+   {
+      List<String> list = new ArrayList<String>(paths.length);
+      Step root = new Step(null, null);
+      for (int i = 0; i < paths.length; i++)
+      {
+         list.add(paths[i]);
+         root.add(paths[i], namespaces, i);
+      }
+      this.paths = Collections.unmodifiableList(list);
+      this.root = root;
+   }
+
+   /**
+    * @return  the compiled expressions, in the order of the result indexes
+    */
+   public List<String> getPaths()
+   {
+      return paths;
+   }
+
+   /**
+    * Evaluate all the expressions, collecting all their matches
+    *
+    * @param node  the evaluation root: an element or a document, whose root element is then used
+    * @return  the matches of each expression
+    */
+   public Result evaluate(Node node)
+   {
+      return evaluate(node, false);
+   }
+
+   /**
+    * Evaluate all the expressions, stopping at the first match of each of them: the walk ends as soon as every
+    * expression has a match, and the subtrees that can only match already matched expressions are skipped
+    *
+    * @param node  the evaluation root: an element or a document, whose root element is then used
+    * @return  the first match of each expression
+    */
+   public Result evaluateFirst(Node node)
+   {
+      return evaluate(node, true);
+   }
+
+   private Result evaluate(Node node, boolean firstOnly)
+   {
+      //node types rather than interface type checks, which are comparatively slow on DOM node classes
+      Element element = node.getNodeType() == Node.DOCUMENT_NODE ? ((Document) node).getDocumentElement() : (Element) node;
+      Result result = new Result(paths);
+      if (element != null)
+      {
+         for (Step step : root.children)
+         {
+            if (step.matches(element))
+            {
+               if (firstOnly)
+               {
+                  visitFirst(element, step, result);
+               }
+               else
+               {
+                  visit(element, step, result);
+               }
+            }
+         }
+      }
+      return result;
+   }
+
+   private static void visit(Element element, Step step, Result result)
+   {
+      for (int index : step.pathIndexes)
+      {
+         result.add(index, element);
+      }
+      if (step.children.length == 0)
+      {
+         return;
+      }
+      //the recursion depth is bounded by the length of the longest expression
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+      {
+         if (child.getNodeType() == Node.ELEMENT_NODE)
+         {
+            String namespaceURI = child.getNamespaceURI();
+            String localName = child.getLocalName();
+            for (Step next : step.children)
+            {
+               if (next.matches(namespaceURI, localName))
+               {
+                  visit((Element) child, next, result);
+               }
+            }
+         }
+      }
+   }
+
+   private static void visitFirst(Element element, Step step, Result result)
+   {
+      for (int index : step.pathIndexes)
+      {
+         result.add(index, element);
+      }
+      if (step.children.length == 0)
+      {
+         return;
+      }
+      for (Node child = element.getFirstChild(); child != null && result.unmatched > 0; child = child.getNextSibling())
+      {
+         if (child.getNodeType() == Node.ELEMENT_NODE)
+         {
+            String namespaceURI = child.getNamespaceURI();
+            String localName = child.getLocalName();
+            for (Step next : step.children)
+            {
+               if (next.matches(namespaceURI, localName) && !result.hasMatches(next.subtreePathIndexes))
+               {
+                  visitFirst((Element) child, next, result);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * A node of the tree of expression steps; the root step only holds the first steps of the expressions
+    */
+   private static final class Step
+   {
+      private final String namespaceURI;
+      private final String localName;
+      Step[] children = new Step[0];
+      /** the expressions ending with this step */
+      int[] pathIndexes = new int[0];
+      /** the expressions ending with this step or one of its descendants */
+      int[] subtreePathIndexes = new int[0];
+
+      Step(String namespaceURI, String localName)
+      {
+         //parsers usually intern names, which turns most comparisons into identity checks
+         this.namespaceURI = namespaceURI != null && namespaceURI != NO_NAMESPACE ? namespaceURI.intern() : namespaceURI;
+         this.localName = localName != null ? localName.intern() : null;
+      }
+
+      void add(String path, Map<String, String> namespaces, int index)
+      {
+         if (path == null || !path.startsWith("/") || path.length() == 1)
+         {
+            throw MESSAGES.invalidPathExpression(path);
+         }
+         Step step = this;
+         int start = 1;
+         while (start <= path.length())
+         {
+            //namespace uris usually contain slashes themselves
+            int end = path.startsWith("{", start) ? path.indexOf('}', start) : start;
+            if (end < 0)
+            {
+               throw MESSAGES.invalidPathExpression(path);
+            }
+            end = path.indexOf('/', end);
+            if (end < 0)
+            {
+               end = path.length();
+            }
+            step = step.child(path, path.substring(start, end), namespaces);
+            step.subtreePathIndexes = append(step.subtreePathIndexes, index);
+            start = end + 1;
+         }
+         step.pathIndexes = append(step.pathIndexes, index);
+      }
+
+      private Step child(String path, String token, Map<String, String> namespaces)
+      {
+         String namespaceURI = null;
+         String localName = token;
+         if (token.startsWith("{"))
+         {
+            int close = token.indexOf('}');
+            if (close < 0)
+            {
+               throw MESSAGES.invalidPathExpression(path);
+            }
+            String ns = token.substring(1, close);
+            namespaceURI = namespaces != null && namespaces.containsKey(ns) ? namespaces.get(ns) : ns;
+            localName = token.substring(close + 1);
+         }
+         if (WILDCARD.equals(localName))
+         {
+            localName = null;
+         }
+         else if (!isNCName(localName))
+         {
+            //e.g. a prefixed name, which would never match a local name
+            throw MESSAGES.invalidPathExpression(path);
+         }
+         if (namespaceURI != null && namespaceURI.length() == 0)
+         {
+            namespaceURI = NO_NAMESPACE;
+         }
+         for (Step child : children)
+         {
+            if (equals(child.namespaceURI, namespaceURI) && equals(child.localName, localName))
+            {
+               return child;
+            }
+         }
+         Step child = new Step(namespaceURI, localName);
+         Step[] steps = new Step[children.length + 1];
+         System.arraycopy(children, 0, steps, 0, children.length);
+         steps[children.length] = child;
+         children = steps;
+         return child;
+      }
+
+      /**
+       * @return  whether the given string is a non-colonized XML name, as element local names are
+       */
+      private static boolean isNCName(String s)
+      {
+         if (s.length() == 0 || !isNameStartChar(s.charAt(0)))
+            return false;
+         for (int i = 1; i < s.length(); i++)
+         {
+            char c = s.charAt(i);
+            if (!isNameStartChar(c) && !(c == '-' || c == '.' || (c >= '0' && c <= '9') || c == 0xB7
+                  || (c >= 0x300 && c <= 0x36F) || c == 0x203F || c == 0x2040))
+               return false;
+         }
+         return true;
+      }
+
+      /**
+       * @return  whether the given char can start an XML name, colon excluded; surrogates are accepted as
+       * supplementary characters are allowed (#x10000-#xEFFFF)
+       */
+      private static boolean isNameStartChar(char c)
+      {
+         return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (c >= 0xC0 && c <= 0xD6)
+               || (c >= 0xD8 && c <= 0xF6) || (c >= 0xF8 && c <= 0x2FF) || (c >= 0x370 && c <= 0x37D)
+               || (c >= 0x37F && c <= 0x1FFF) || c == 0x200C || c == 0x200D || (c >= 0x2070 && c <= 0x218F)
+               || (c >= 0x2C00 && c <= 0x2FEF) || (c >= 0x3001 && c <= 0xD7FF) || (c >= 0xD800 && c <= 0xDFFF)
+               || (c >= 0xF900 && c <= 0xFDCF) || (c >= 0xFDF0 && c <= 0xFFFD);
+      }
+
+      private static int[] append(int[] indexes, int index)
+      {
+         int[] appended = new int[indexes.length + 1];
+         System.arraycopy(indexes, 0, appended, 0, indexes.length);
+         appended[indexes.length] = index;
+         return appended;
+      }
+
+      boolean matches(Element element)
+      {
+         return matches(element.getNamespaceURI(), element.getLocalName());
+      }
+
+      boolean matches(String elementNamespaceURI, String elementLocalName)
+      {
+         if (namespaceURI == NO_NAMESPACE)
+         {
+            if (elementNamespaceURI != null && elementNamespaceURI.length() > 0)
+               return false;
+         }
+         else if (namespaceURI != null && !equalNames(namespaceURI, elementNamespaceURI))
+         {
+            return false;
+         }
+         return localName == null || equalNames(localName, elementLocalName);
+      }
+
+      /**
+       * Compares a step name with a node name: most comparisons are between different names, which the
+       * (cached) string hashes tell apart without comparing the characters
+       */
+      private static boolean equalNames(String name, String nodeName)
+      {
+         return name == nodeName || nodeName != null && name.hashCode() == nodeName.hashCode() && name.equals(nodeName);
+      }
+
+      private static boolean equals(String a, String b)
+      {
+         return a == null ? b == null : a.equals(b);
+      }
+   }
+
+   /**
+    * The matches of a {@link PathQuery} evaluation, in document order for each expression
+    */
+   public static final class Result
+   {
+      private final List<String> paths;
+      private final Element[] first;
+      /** the matches following the first one, allocated on demand */
+      private List<List<Element>> others;
+      /** the number of expressions without matches */
+      int unmatched;
+
+      Result(List<String> paths)
+      {
+         this.paths = paths;
+         this.first = new Element[paths.size()];
+         this.unmatched = first.length;
+      }
+
+      void add(int index, Element element)
+      {
+         if (first[index] == null)
+         {
+            first[index] = element;
+            unmatched--;
+            return;
+         }
+         if (others == null)
+         {
+            others = new ArrayList<List<Element>>(Collections.<List<Element>>nCopies(first.length, null));
+         }
+         List<Element> list = others.get(index);
+         if (list == null)
+         {
+            list = new ArrayList<Element>(4);
+            others.set(index, list);
+         }
+         list.add(element);
+      }
+
+      boolean hasMatches(int[] indexes)
+      {
+         for (int index : indexes)
+         {
+            if (first[index] == null)
+               return false;
+         }
+         return true;
+      }
+
+      /**
+       * Get the first match of an expression
+       *
+       * @param index  the expression index
+       * @return  the first matching element, null if none
+       */
+      public Element getFirst(int index)
+      {
+         return first[index];
+      }
+
+      /**
+       * Get the first match of an expression
+       *
+       * @param path  the expression, as compiled
+       * @return  the first matching element, null if none
+       */
+      public Element getFirst(String path)
+      {
+         int index = paths.indexOf(path);
+         return index < 0 ? null : getFirst(index);
+      }
+
+      /**
+       * Get all the matches of an expression
+       *
+       * @param index  the expression index
+       * @return  the matching elements
+       */
+      public List<Element> getAll(int index)
+      {
+         if (first[index] == null)
+            return Collections.emptyList();
+         List<Element> more = others != null ? others.get(index) : null;
+         if (more == null)
+            return Collections.singletonList(first[index]);
+         List<Element> list = new ArrayList<Element>(more.size() + 1);
+         list.add(first[index]);
+         list.addAll(more);
+         return list;
+      }
+
+      /**
+       * Get all the matches of an expression
+       *
+       * @param path  the expression, as compiled
+       * @return  the matching elements
+       */
+      public List<Element> getAll(String path)
+      {
+         int index = paths.indexOf(path);
+         return index < 0 ? Collections.<Element>emptyList() : getAll(index);
+      }
+   }
+}
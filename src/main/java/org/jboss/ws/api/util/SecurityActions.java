@@ -18,11 +18,14 @@
  */
 package org.jboss.ws.api.util;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.Enumeration;
 
 /**
  * Security actions for this package
@@ -105,6 +108,39 @@ class SecurityActions
       }
    }
    
+   /**
+    * Get resources
+    * 
+    * @param cl
+    * @param name
+    * @return the resource URLs
+    * @throws IOException
+    */
+   static Enumeration<URL> getResources(final ClassLoader cl, final String name) throws IOException
+   {
+      SecurityManager sm = System.getSecurityManager();
+      if (sm == null)
+      {
+         return cl.getResources(name);
+      }
+      else
+      {
+         try
+         {
+            return AccessController.doPrivileged(new PrivilegedExceptionAction<Enumeration<URL>>() {
+               public Enumeration<URL> run() throws IOException
+               {
+                  return cl.getResources(name);
+               }
+            });
+         }
+         catch (PrivilegedActionException e)
+         {
+            throw (IOException) e.getException();
+         }
+      }
+   }
+   
    /**
     * Load a class using the provided classloader
     * 
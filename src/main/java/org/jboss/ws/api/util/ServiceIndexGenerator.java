@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates the service index ({@value ServiceLoader#SERVICE_INDEX}) of a classes directory, listing the
+ * bindings declared by the META-INF/services/* resources it contains. The index allows {@link ServiceLoader}
+ * to resolve all the bindings of a jar in a single resource lookup instead of one lookup per service.
+ * <p>
+ * Meant to be invoked at build time after the resources have been processed, for instance using the
+ * exec-maven-plugin <code>java</code> goal in the <code>process-classes</code> phase, passing
+ * <code>${project.build.outputDirectory}</code> as argument.
+ * </p>
+ */
+public final class ServiceIndexGenerator
+{
+   /**
+    * Constructor.
+    */
+   private ServiceIndexGenerator()
+   {
+      // forbidden instantiation
+   }
+
+   /**
+    * Writes the service index of each of the provided classes directories.
+    *
+    * @param args  the classes directories
+    * @throws IOException  if a services resource cannot be read or the index cannot be written
+    */
+   public static void main(String[] args) throws IOException
+   {
+      for (String dir : args)
+      {
+         int count = generate(new File(dir));
+         System.out.println("Written " + count + " service bindings to " + new File(dir, ServiceLoader.SERVICE_INDEX));
+      }
+   }
+
+   /**
+    * Writes the service index of the given classes directory; nothing is written when the
+    * directory does not contain any META-INF/services/* resource.
+    *
+    * @param classesDir  the classes directory
+    * @return  the number of bindings written to the index
+    * @throws IOException  if a services resource cannot be read or the index cannot be written
+    */
+   public static int generate(File classesDir) throws IOException
+   {
+      Map<String, String> bindings = new TreeMap<String, String>();
+      File[] files = new File(classesDir, "META-INF/services").listFiles();
+      if (files != null)
+      {
+         for (File file : files)
+         {
+            if (file.isFile())
+            {
+               String factoryName;
+               try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+               {
+                  factoryName = ServiceLoader.readServiceName(br);
+               }
+               if (factoryName != null)
+               {
+                  bindings.put(file.getName(), factoryName);
+               }
+            }
+         }
+      }
+      if (!bindings.isEmpty())
+      {
+         File index = new File(classesDir, ServiceLoader.SERVICE_INDEX);
+         try (OutputStream os = Files.newOutputStream(index.toPath());
+              Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8))
+         {
+            for (Map.Entry<String, String> entry : bindings.entrySet())
+            {
+               writer.write(escape(entry.getKey(), true));
+               writer.write('=');
+               writer.write(escape(entry.getValue(), false));
+               writer.write('\n');
+            }
+         }
+      }
+      return bindings.size();
+   }
+
+   /**
+    * Escapes the given key or value the way {@link java.util.Properties#store(Writer, String)} does, except for
+    * non-ASCII characters which are written as is (the index is UTF-8 encoded), so that it is read back unchanged
+    * by {@link java.util.Properties#load(java.io.Reader)}
+    */
+   static String escape(String s, boolean key)
+   {
+      StringBuilder sb = new StringBuilder(s.length() + 8);
+      for (int i = 0; i < s.length(); i++)
+      {
+         char c = s.charAt(i);
+         switch (c)
+         {
+            case ' ':
+               if (i == 0 || key)
+                  sb.append('\\');
+               sb.append(' ');
+               break;
+            case '\t':
+               sb.append("\\t");
+               break;
+            case '\n':
+               sb.append("\\n");
+               break;
+            case '\r':
+               sb.append("\\r");
+               break;
+            case '\f':
+               sb.append("\\f");
+               break;
+            case '\\':
+            case '=':
+            case ':':
+            case '#':
+            case '!':
+               sb.append('\\').append(c);
+               break;
+            default:
+               sb.append(c);
+         }
+      }
+      return sb.toString();
+   }
+}
@@ -18,27 +18,43 @@
  */
 package org.jboss.ws.api.util;
 
+import static org.jboss.ws.api.Log.LOGGER;
 import static org.jboss.ws.api.Messages.MESSAGES;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.management.ObjectName;
 
 /**
  * Load a service class of a given name using this ordered lookup procedure:
  * <ol>
+ * <li>If a service index ({@value #SERVICE_INDEX}) visible to the classloader contains an entry with the given name,
+ * then its value is used as the name of the implementation class.</li>
+ *
  * <li>If a resource file with the given name is found in META-INF/services/..., then
- * its first line, if present, is used as the UTF-8 encoded name of the implementation class.</li>
+ * its first line, if present and not blank, is used (trimmed) as the UTF-8 encoded name of the implementation class.</li>
  * 
  * <li>If a system property with the given name is defined, then its value is used
- * as the name of the implementation class.</li>
+ * as the name of the implementation class; system property values are cached, see {@link #refreshSystemProperties()}.</li>
  * 
  * <li>Finally, a default implementation class name is used.</li>
  * </ol>
@@ -51,10 +67,94 @@ import java.util.concurrent.ConcurrentHashMap;
 public final class ServiceLoader
 {
    /**
-    * A synchronized weak hash map that keeps factory names retrieved using Service API (META-INF/services/*) for each classloader.
+    * The name of the resource providing the precomputed service bindings of a jar, as generated by {@link ServiceIndexGenerator}.
+    */
+   public static final String SERVICE_INDEX = "META-INF/jbossws-services.index";
+
+   /**
+    * The system property setting the interval (in milliseconds) after which the system property snapshot is
+    * automatically refreshed; by default the snapshot is only refreshed through {@link #refreshSystemProperties()}.
+    */
+   public static final String PROPERTIES_REFRESH_INTERVAL = "org.jboss.ws.api.util.ServiceLoader.propertiesRefreshInterval";
+
+   private static final String SERVICES_PREFIX = "META-INF/services/";
+
+   /**
+    * A concurrent weak identity map that keeps factory names retrieved using Service API (META-INF/services/*) for each classloader.
     * Weak keys are used to remove entries when classloaders are garbage collected; values are service-property-name -> factory name maps.
     */
-   private static Map<ClassLoader, Map<String, String>> serviceMap = Collections.synchronizedMap(new WeakHashMap<ClassLoader, Map<String, String>>());
+   private static final ConcurrentWeakIdentityMap<ClassLoader, Map<String, String>> serviceMap = new ConcurrentWeakIdentityMap<>();
+
+   /**
+    * Sentinel value stored in the service map when no META-INF/services/* resource has been found for a given
+    * property; this prevents scanning the whole classloader hierarchy again on each lookup. Compared by identity.
+    */
+   private static final String NO_SERVICE = new String("");
+
+   /**
+    * A snapshot of the values of the system properties used for resolving services, see {@link #loadFromSystemProperty}.
+    */
+   private static final Map<String, String> propertyMap = new ConcurrentHashMap<>();
+
+   /**
+    * Sentinel value stored in the system property snapshot when a property is not defined. Compared by identity.
+    */
+   private static final String NO_PROPERTY = new String("");
+
+   private static final long propertiesRefreshInterval = getPropertiesRefreshInterval();
+
+   private static volatile long propertiesSnapshotTime = System.nanoTime();
+
+   private static final ServiceLoaderStatistics statistics = new ServiceLoaderStatistics();
+
+   /**
+    * A concurrent weak identity map that keeps the factory classes resolved for each classloader; values are
+    * factory class name -> class maps. Classes are weakly referenced too, not to pin the classloader they belong to.
+    */
+   private static final ConcurrentWeakIdentityMap<ClassLoader, Map<String, WeakReference<Class<?>>>> classMap = new ConcurrentWeakIdentityMap<>();
+
+   /**
+    * The no-arg constructor handles of the resolved factory classes; being attached to the classes themselves,
+    * they go away together with the owning classloader.
+    */
+   private static final ClassValue<MethodHandle> constructors = new ClassValue<MethodHandle>()
+   {
+      @Override
+      protected MethodHandle computeValue(Class<?> type)
+      {
+         try
+         {
+            return MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+         }
+         catch (NoSuchMethodException | IllegalAccessException e)
+         {
+            throw new IllegalStateException(e);
+         }
+      }
+   };
+
+   /**
+    * The shared factory instances returned by {@link ServiceLoader#loadSharedService(String, String, ClassLoader)}.
+    */
+   private static final ClassValue<Object> sharedInstances = new ClassValue<Object>()
+   {
+      @Override
+      protected Object computeValue(Class<?> type)
+      {
+         try
+         {
+            return constructors.get(type).invoke();
+         }
+         catch (RuntimeException | Error e)
+         {
+            throw e;
+         }
+         catch (Throwable t)
+         {
+            throw new IllegalStateException(t);
+         }
+      }
+   };
    
    /**
     * Constructor.
@@ -87,12 +187,106 @@ public final class ServiceLoader
     */
    public static Object loadService(String propertyName, String defaultFactory, ClassLoader cl)
    {
-      Object factory = loadFromServices(propertyName, cl);
-      if (factory == null)
+      return loadService(propertyName, defaultFactory, cl, false);
+   }
+
+   /**
+    * The same as {@link #loadService(String propertyName, String defaultFactory, ClassLoader cl)} except
+    * a single instance of the resolved factory class is created and returned to every caller; this is meant
+    * to be used for stateless factories only.
+    *
+    * @param propertyName   The property name for the service to resolve
+    * @param defaultFactory Default factory class name to be used when not able to resolve anything
+    * @param cl             The classLoader to be used for loading resolved service
+    * @return               The shared instance of the required service
+    */
+   public static Object loadSharedService(String propertyName, String defaultFactory, ClassLoader cl)
+   {
+      return loadService(propertyName, defaultFactory, cl, true);
+   }
+
+   /**
+    * Concurrently resolves and instantiates the services with the given property names using the common
+    * fork-join pool, so that the caches used by {@link #loadService(String, String, ClassLoader)} are filled
+    * before the services are actually needed. A failure resolving a service does not affect the others.
+    *
+    * @param propertyNames  The property names of the services to resolve
+    * @param cl             The classLoader to be used for loading resolved services
+    * @return               The outcome of each service resolution, in the order of the provided property names
+    */
+   public static List<PrewarmResult> prewarm(Collection<String> propertyNames, final ClassLoader cl)
+   {
+      return propertyNames.parallelStream().map(propertyName -> prewarm(propertyName, cl)).collect(Collectors.toList());
+   }
+
+   private static PrewarmResult prewarm(String propertyName, ClassLoader cl)
+   {
+      long start = System.nanoTime();
+      try
       {
-         factory = loadFromSystemProperty(propertyName, defaultFactory, cl);
+         boolean resolved = loadService(propertyName, null, cl) != null;
+         long time = System.nanoTime() - start;
+         if (resolved && LOGGER.isTraceEnabled())
+            LOGGER.prewarmedService(propertyName, time);
+         return new PrewarmResult(propertyName, time, resolved, null);
+      }
+      catch (RuntimeException e)
+      {
+         LOGGER.cannotPrewarmService(propertyName, e);
+         return new PrewarmResult(propertyName, System.nanoTime() - start, false, e);
       }
-      return factory;
+   }
+
+   private static Object loadService(String propertyName, String defaultFactory, ClassLoader cl, boolean shared)
+   {
+      ServiceLoaderStatistics.Counters counters = statistics.getCounters(propertyName);
+      long start = System.nanoTime();
+      try
+      {
+         Object factory = loadFromServices(propertyName, cl, shared, counters);
+         if (factory == null)
+         {
+            factory = loadFromSystemProperty(propertyName, defaultFactory, cl, shared, counters);
+         }
+         return factory;
+      }
+      finally
+      {
+         counters.lookups.increment();
+         counters.lookupTime.add(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * Get the statistics of the service lookups performed so far; these are also available through JMX
+    * once {@link #registerStatistics()} has been called.
+    *
+    * @return the service lookup statistics
+    */
+   public static ServiceLoaderStatisticsMXBean getStatistics()
+   {
+      return statistics;
+   }
+
+   /**
+    * Registers the service lookup statistics in the platform MBean server, unless already registered. Nothing is
+    * registered otherwise, so that the MBean server is not initialized by the first service lookup; the caller
+    * is expected to call {@link #unregisterStatistics()} when this library is unloaded, as the registered MBean
+    * prevents its classloader from being garbage collected.
+    *
+    * @return the name of the registered MBean, null if the registration failed
+    */
+   public static ObjectName registerStatistics()
+   {
+      return statistics.register();
+   }
+
+   /**
+    * Unregisters the service lookup statistics from the platform MBean server, if registered.
+    */
+   public static void unregisterStatistics()
+   {
+      statistics.unregister();
    }
    
    /**
@@ -125,21 +319,20 @@ public final class ServiceLoader
    
    /** Use the Services API (as detailed in the JAR specification), if available, to determine the classname.
     */
-   private static Object loadFromServices(String propertyName, ClassLoader loader)
+   private static Object loadFromServices(String propertyName, ClassLoader loader, boolean shared, ServiceLoaderStatistics.Counters counters)
    {
       Object factory = null;
       String factoryName = null;
       
       // Use the Services API (as detailed in the JAR specification), if available, to determine the classname.
-      String filename = "META-INF/services/" + propertyName;
+      String filename = SERVICES_PREFIX + propertyName;
       
       try
       {
-         factoryName = getServiceNameUsingCache(loader, filename);
+         factoryName = getServiceNameUsingCache(loader, filename, counters);
          if (factoryName != null)
          {
-            Class<?> factoryClass = SecurityActions.loadClass(loader, factoryName);
-            factory = factoryClass.newInstance();
+            factory = newInstance(loader, factoryName, shared, counters);
          }
       }
       catch (Throwable t)
@@ -150,43 +343,162 @@ public final class ServiceLoader
       return factory;
    }
 
-   private static String getServiceNameUsingCache(ClassLoader loader, String filename) throws IOException
+   private static String getServiceNameUsingCache(ClassLoader loader, String filename, ServiceLoaderStatistics.Counters counters) throws IOException
    {
-      Map<String, String> map;
-      synchronized (serviceMap) {
-         map = serviceMap.get(loader);
-         if (map == null) {
-            map = new ConcurrentHashMap<>();
-            serviceMap.put(loader, map);
-         }
+      Map<String, String> map = serviceMap.get(loader);
+      if (map == null)
+      {
+         // the indexes are read outside of the map, so that no lock is held while the classloader performs I/O
+         // (possibly calling back into this class); when racing with another thread, the first stored map is kept
+         Map<String, String> indexes = loadServiceIndexes(loader);
+         map = serviceMap.putIfAbsent(loader, indexes);
+         if (map == null)
+            map = indexes;
       }
       String factoryName = map.get(filename);
-      if (factoryName != null) return factoryName;
+      if (factoryName == NO_SERVICE)
+      {
+         counters.negativeCacheHits.increment();
+         return null;
+      }
+      if (factoryName != null)
+      {
+         counters.cacheHits.increment();
+         return factoryName;
+      }
+      counters.cacheMisses.increment();
 
       InputStream inStream = SecurityActions.getResourceAsStream(loader, filename);
       if (inStream != null)
       {
-         BufferedReader br = new BufferedReader(new InputStreamReader(inStream, "UTF-8"));
-         factoryName = br.readLine();
-         br.close();
-         map.put(filename, factoryName);
+         try (BufferedReader br = new BufferedReader(new InputStreamReader(inStream, StandardCharsets.UTF_8)))
+         {
+            factoryName = readServiceName(br);
+         }
       }
+      map.put(filename, factoryName != null ? factoryName : NO_SERVICE);
       return factoryName;
    }
+
+   /**
+    * Reads the implementation class name from a META-INF/services/* resource: its first line, trimmed;
+    * shared with {@link ServiceIndexGenerator}, so that indexed and non-indexed lookups resolve the same name.
+    *
+    * @return  the class name, null if the first line is missing or blank
+    */
+   static String readServiceName(BufferedReader reader) throws IOException
+   {
+      String line = reader.readLine();
+      if (line == null)
+         return null;
+      line = line.trim();
+      return line.length() > 0 ? line : null;
+   }
+
+   /**
+    * Reads all the service indexes visible to the given classloader in a single pass and returns a new service map
+    * initialized with their bindings; when multiple indexes provide the same binding, the first one wins, consistently
+    * with the resource lookup order.
+    */
+   private static Map<String, String> loadServiceIndexes(ClassLoader loader)
+   {
+      Map<String, String> map = new ConcurrentHashMap<>();
+      Enumeration<URL> urls;
+      try
+      {
+         urls = SecurityActions.getResources(loader, SERVICE_INDEX);
+      }
+      catch (IOException e)
+      {
+         LOGGER.cannotReadServiceIndex(SERVICE_INDEX, e);
+         return map;
+      }
+      while (urls.hasMoreElements())
+      {
+         URL url = urls.nextElement();
+         Properties index = new Properties();
+         try (InputStream is = url.openStream())
+         {
+            index.load(new InputStreamReader(is, StandardCharsets.UTF_8));
+         }
+         catch (IOException e)
+         {
+            LOGGER.cannotReadServiceIndex(url.toString(), e);
+            continue;
+         }
+         for (String propertyName : index.stringPropertyNames())
+         {
+            map.putIfAbsent(SERVICES_PREFIX + propertyName, index.getProperty(propertyName));
+         }
+         if (LOGGER.isTraceEnabled())
+            LOGGER.serviceIndexLoaded(url.toString(), index.size());
+      }
+      return map;
+   }
+
+   /**
+    * Clears the cached factory names (including the cached lookup misses) for the given classloader; this is
+    * meant to be used when new META-INF/services/* resources are made available to an existing classloader.
+    *
+    * @param loader  The classloader whose cached service lookups are to be discarded
+    */
+   public static void clearCache(ClassLoader loader)
+   {
+      serviceMap.remove(loader);
+      classMap.remove(loader);
+   }
+
+   /**
+    * Clears the cached factory names (including the cached lookup misses) for all classloaders.
+    */
+   public static void clearCache()
+   {
+      serviceMap.clear();
+      classMap.clear();
+   }
+
+   private static Object newInstance(ClassLoader loader, String factoryName, boolean shared, ServiceLoaderStatistics.Counters counters) throws Throwable
+   {
+      Class<?> factoryClass = getClassUsingCache(loader, factoryName, counters);
+      if (shared)
+      {
+         return sharedInstances.get(factoryClass);
+      }
+      long start = System.nanoTime();
+      Object factory = constructors.get(factoryClass).invoke();
+      counters.instantiations.increment();
+      counters.instantiationTime.add(System.nanoTime() - start);
+      return factory;
+   }
+
+   private static Class<?> getClassUsingCache(ClassLoader loader, String factoryName, ServiceLoaderStatistics.Counters counters) throws Exception
+   {
+      Map<String, WeakReference<Class<?>>> map = classMap.computeIfAbsent(loader, l -> new ConcurrentHashMap<>());
+      WeakReference<Class<?>> ref = map.get(factoryName);
+      Class<?> factoryClass = ref != null ? ref.get() : null;
+      if (factoryClass == null)
+      {
+         long start = System.nanoTime();
+         factoryClass = SecurityActions.loadClass(loader, factoryName);
+         counters.classLoads.increment();
+         counters.classLoadTime.add(System.nanoTime() - start);
+         map.put(factoryName, new WeakReference<Class<?>>(factoryClass));
+      }
+      return factoryClass;
+   }
    
    /** Use the system property
     */
-   private static Object loadFromSystemProperty(String propertyName, String defaultFactory, ClassLoader loader)
+   private static Object loadFromSystemProperty(String propertyName, String defaultFactory, ClassLoader loader, boolean shared, ServiceLoaderStatistics.Counters counters)
    {
       Object factory = null;
 
-      PrivilegedAction<String> action = new PropertyAccessAction(propertyName);
-      String factoryName = AccessController.doPrivileged(action);
+      String factoryName = getSystemPropertyUsingCache(propertyName);
       if (factoryName != null)
       {
          try
          {
-            factory = SecurityActions.loadClass(loader, factoryName).newInstance();
+            factory = newInstance(loader, factoryName, shared, counters);
          }
          catch (Throwable t)
          {
@@ -197,20 +509,20 @@ public final class ServiceLoader
       // Use the default factory implementation class.
       if (factory == null && defaultFactory != null)
       {
-         factory = loadDefault(defaultFactory, loader);
+         factory = loadDefault(defaultFactory, loader, shared, counters);
       }
 
       return factory;
    }
 
-   private static Object loadDefault(String defaultFactory, ClassLoader loader)
+   private static Object loadDefault(String defaultFactory, ClassLoader loader, boolean shared, ServiceLoaderStatistics.Counters counters)
    {
       Object factory;
 
       // Use the default factory implementation class.
       try
       {
-         factory = SecurityActions.loadClass(loader, defaultFactory).newInstance();
+         factory = newInstance(loader, defaultFactory, shared, counters);
       }
       catch (Throwable t)
       {
@@ -220,6 +532,105 @@ public final class ServiceLoader
       return factory;
    }
 
+   private static String getSystemPropertyUsingCache(String propertyName)
+   {
+      if (propertiesRefreshInterval > 0 && System.nanoTime() - propertiesSnapshotTime > propertiesRefreshInterval)
+      {
+         refreshSystemProperties();
+      }
+      String value = propertyMap.get(propertyName);
+      if (value == null)
+      {
+         PrivilegedAction<String> action = new PropertyAccessAction(propertyName);
+         value = AccessController.doPrivileged(action);
+         propertyMap.put(propertyName, value != null ? value : NO_PROPERTY);
+      }
+      return value == NO_PROPERTY ? null : value;
+   }
+
+   /**
+    * Discards the snapshot of the system properties used for resolving services, so that changes to those
+    * properties are seen by the next lookups.
+    */
+   public static void refreshSystemProperties()
+   {
+      propertiesSnapshotTime = System.nanoTime();
+      propertyMap.clear();
+   }
+
+   private static long getPropertiesRefreshInterval()
+   {
+      String value = AccessController.doPrivileged(new PropertyAccessAction(PROPERTIES_REFRESH_INTERVAL));
+      try
+      {
+         return value != null ? TimeUnit.MILLISECONDS.toNanos(Long.parseLong(value.trim())) : 0;
+      }
+      catch (NumberFormatException e)
+      {
+         return 0;
+      }
+   }
+
+   /**
+    * The outcome of the resolution of a service by {@link ServiceLoader#prewarm(Collection, ClassLoader)}.
+    */
+   public static final class PrewarmResult
+   {
+      private final String propertyName;
+      private final long time;
+      private final boolean resolved;
+      private final Throwable failure;
+
+      PrewarmResult(String propertyName, long time, boolean resolved, Throwable failure)
+      {
+         this.propertyName = propertyName;
+         this.time = time;
+         this.resolved = resolved;
+         this.failure = failure;
+      }
+
+      /**
+       * @return the property name of the service
+       */
+      public String getPropertyName()
+      {
+         return propertyName;
+      }
+
+      /**
+       * @param unit  the time unit of the returned value
+       * @return the time spent resolving and instantiating the service
+       */
+      public long getTime(TimeUnit unit)
+      {
+         return unit.convert(time, TimeUnit.NANOSECONDS);
+      }
+
+      /**
+       * @return true if a provider of the service has been found and instantiated; false if no provider is
+       * available (neither through META-INF/services/* nor through a system property) or the service failed to load
+       */
+      public boolean isResolved()
+      {
+         return resolved;
+      }
+
+      /**
+       * @return the failure resolving or instantiating the service, null if the service has been successfully
+       * loaded or no provider is available
+       */
+      public Throwable getFailure()
+      {
+         return failure;
+      }
+
+      @Override
+      public String toString()
+      {
+         return propertyName + " [" + time + " ns" + (failure != null ? ", failure=" + failure : resolved ? "" : ", unresolved") + "]";
+      }
+   }
+
    private static class PropertyAccessAction implements PrivilegedAction<String>
    {
       private final String name;
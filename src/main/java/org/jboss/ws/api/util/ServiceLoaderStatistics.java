@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.jboss.ws.api.Log.LOGGER;
+
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the statistics of the service lookups performed through {@link ServiceLoader}.
+ */
+final class ServiceLoaderStatistics implements ServiceLoaderStatisticsMXBean
+{
+   static final String OBJECT_NAME = "jboss.ws:service=ServiceLoaderStatistics";
+
+   private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+   /** the name this instance is registered with, null when not registered */
+   private ObjectName registeredName;
+
+   /**
+    * Get the counters for the given service, creating them if needed
+    *
+    * @param propertyName  the service property name
+    * @return  the counters
+    */
+   Counters getCounters(String propertyName)
+   {
+      Counters c = counters.get(propertyName);
+      return c != null ? c : counters.computeIfAbsent(propertyName, p -> new Counters());
+   }
+
+   public Map<String, ServiceStatistics> getServiceStatistics()
+   {
+      Map<String, ServiceStatistics> map = new TreeMap<String, ServiceStatistics>();
+      for (Map.Entry<String, Counters> entry : counters.entrySet())
+      {
+         map.put(entry.getKey(), entry.getValue().snapshot());
+      }
+      return map;
+   }
+
+   public void reset()
+   {
+      counters.clear();
+   }
+
+   /**
+    * Registers this instance in the platform MBean server, unless already registered; the name is
+    * {@value #OBJECT_NAME} qualified with the identity of the classloader of this class, so that each copy
+    * of this library gets its own MBean. Registration failures (e.g. because of missing permissions) are
+    * logged and not fatal.
+    *
+    * @return  the name of the registered MBean, null if the registration failed
+    */
+   synchronized ObjectName register()
+   {
+      if (registeredName == null)
+      {
+         final String name = getObjectName();
+         try
+         {
+            registeredName = AccessController.doPrivileged(new PrivilegedAction<ObjectName>() {
+               public ObjectName run()
+               {
+                  try
+                  {
+                     return ManagementFactory.getPlatformMBeanServer().registerMBean(ServiceLoaderStatistics.this, new ObjectName(name)).getObjectName();
+                  }
+                  catch (Exception e)
+                  {
+                     throw new IllegalStateException(e);
+                  }
+               }
+            });
+         }
+         catch (RuntimeException | LinkageError e)
+         {
+            LOGGER.cannotRegisterMBean(name, e);
+         }
+      }
+      return registeredName;
+   }
+
+   /**
+    * Unregisters this instance from the platform MBean server, if registered
+    */
+   synchronized void unregister()
+   {
+      final ObjectName name = registeredName;
+      if (name != null)
+      {
+         registeredName = null;
+         try
+         {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+               public Object run()
+               {
+                  MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                  try
+                  {
+                     if (server.isRegistered(name))
+                        server.unregisterMBean(name);
+                     return null;
+                  }
+                  catch (Exception e)
+                  {
+                     throw new IllegalStateException(e);
+                  }
+               }
+            });
+         }
+         catch (RuntimeException e)
+         {
+            LOGGER.cannotUnregisterMBean(name.toString(), e);
+         }
+      }
+   }
+
+   private static String getObjectName()
+   {
+      ClassLoader loader = ServiceLoaderStatistics.class.getClassLoader();
+      return OBJECT_NAME + ",loader=" + (loader != null ? Integer.toHexString(System.identityHashCode(loader)) : "bootstrap");
+   }
+
+   /**
+    * The live counters of a given service
+    */
+   static final class Counters
+   {
+      final LongAdder lookups = new LongAdder();
+      final LongAdder lookupTime = new LongAdder();
+      final LongAdder cacheHits = new LongAdder();
+      final LongAdder negativeCacheHits = new LongAdder();
+      final LongAdder cacheMisses = new LongAdder();
+      final LongAdder classLoads = new LongAdder();
+      final LongAdder classLoadTime = new LongAdder();
+      final LongAdder instantiations = new LongAdder();
+      final LongAdder instantiationTime = new LongAdder();
+
+      ServiceStatistics snapshot()
+      {
+         return new ServiceStatistics(lookups.sum(), lookupTime.sum(), cacheHits.sum(), negativeCacheHits.sum(),
+               cacheMisses.sum(), classLoads.sum(), classLoadTime.sum(), instantiations.sum(), instantiationTime.sum());
+      }
+   }
+}
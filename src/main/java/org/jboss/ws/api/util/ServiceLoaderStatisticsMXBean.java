@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the cost of the service lookups performed through {@link ServiceLoader};
+ * registered in the platform MBean server through {@link ServiceLoader#registerStatistics()}, under
+ * {@value ServiceLoaderStatistics#OBJECT_NAME} qualified with a <code>loader</code> key identifying the
+ * classloader of this library.
+ */
+public interface ServiceLoaderStatisticsMXBean
+{
+   /**
+    * Get the statistics of the service lookups
+    *
+    * @return the statistics for each service property name
+    */
+   Map<String, ServiceStatistics> getServiceStatistics();
+
+   /**
+    * Reset all the statistics
+    */
+   void reset();
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+/**
+ * A snapshot of the statistics of the lookups of a given service through {@link ServiceLoader}.
+ * All times are in nanoseconds.
+ */
+public final class ServiceStatistics
+{
+   private final long lookups;
+   private final long lookupTime;
+   private final long cacheHits;
+   private final long negativeCacheHits;
+   private final long cacheMisses;
+   private final long classLoads;
+   private final long classLoadTime;
+   private final long instantiations;
+   private final long instantiationTime;
+
+   ServiceStatistics(long lookups, long lookupTime, long cacheHits, long negativeCacheHits, long cacheMisses,
+         long classLoads, long classLoadTime, long instantiations, long instantiationTime)
+   {
+      this.lookups = lookups;
+      this.lookupTime = lookupTime;
+      this.cacheHits = cacheHits;
+      this.negativeCacheHits = negativeCacheHits;
+      this.cacheMisses = cacheMisses;
+      this.classLoads = classLoads;
+      this.classLoadTime = classLoadTime;
+      this.instantiations = instantiations;
+      this.instantiationTime = instantiationTime;
+   }
+
+   /**
+    * @return the number of lookups of the service
+    */
+   public long getLookups()
+   {
+      return lookups;
+   }
+
+   /**
+    * @return the overall time spent looking up the service
+    */
+   public long getLookupTime()
+   {
+      return lookupTime;
+   }
+
+   /**
+    * @return the number of lookups resolved using a cached (or indexed) META-INF/services/* binding
+    */
+   public long getCacheHits()
+   {
+      return cacheHits;
+   }
+
+   /**
+    * @return the number of lookups which skipped the META-INF/services/* resource scan because of a cached miss
+    */
+   public long getNegativeCacheHits()
+   {
+      return negativeCacheHits;
+   }
+
+   /**
+    * @return the number of lookups which required scanning for the META-INF/services/* resource
+    */
+   public long getCacheMisses()
+   {
+      return cacheMisses;
+   }
+
+   /**
+    * @return the number of times the factory class has been loaded
+    */
+   public long getClassLoads()
+   {
+      return classLoads;
+   }
+
+   /**
+    * @return the overall time spent loading the factory class
+    */
+   public long getClassLoadTime()
+   {
+      return classLoadTime;
+   }
+
+   /**
+    * @return the number of times the factory has been instantiated
+    */
+   public long getInstantiations()
+   {
+      return instantiations;
+   }
+
+   /**
+    * @return the overall time spent instantiating the factory
+    */
+   public long getInstantiationTime()
+   {
+      return instantiationTime;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "[lookups=" + lookups + ", lookupTime=" + lookupTime + ", cacheHits=" + cacheHits + ", negativeCacheHits="
+            + negativeCacheHits + ", cacheMisses=" + cacheMisses + ", classLoads=" + classLoads + ", classLoadTime="
+            + classLoadTime + ", instantiations=" + instantiations + ", instantiationTime=" + instantiationTime + "]";
+   }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Streaming counterpart of {@link DOMUtils}: answers simple queries (an element, its name, an attribute value)
+ * over a {@link XMLStreamReader} in a single forward pass, stopping as soon as the answer is available, and
+ * builds DOM fragments only for the subtrees explicitly requested.
+ * <p>
+ * As in {@link DOMUtils}, a name without namespace matches elements by local name only.
+ * </p>
+ *
+ * @see DOMUtils
+ */
+public abstract class StAXUtils
+{
+   /**
+    * Move to the next start element, at any depth
+    *
+    * @param reader  the reader
+    * @return  true if the reader is on a start element, false if the end of the document has been reached
+    * @throws XMLStreamException  exception
+    */
+   public static boolean nextElement(XMLStreamReader reader) throws XMLStreamException
+   {
+      while (reader.hasNext())
+      {
+         if (reader.next() == XMLStreamConstants.START_ELEMENT)
+            return true;
+      }
+      return false;
+   }
+
+   /**
+    * Move to the next start element with the given name, at any depth
+    *
+    * @param reader  the reader
+    * @param name  the element name
+    * @return  true if the element has been found, false if the end of the document has been reached
+    * @throws XMLStreamException  exception
+    */
+   public static boolean nextElement(XMLStreamReader reader, QName name) throws XMLStreamException
+   {
+      while (nextElement(reader))
+      {
+         if (matches(reader, name))
+            return true;
+      }
+      return false;
+   }
+
+   /**
+    * Move to the first child element of the current start element
+    *
+    * @param reader  the reader, on a start element
+    * @return  true if the reader is on the first child element, false if the reader is on the end element
+    * of the current element, which has no child elements
+    * @throws XMLStreamException  exception
+    */
+   public static boolean firstChildElement(XMLStreamReader reader) throws XMLStreamException
+   {
+      reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+      return skipToChildElement(reader);
+   }
+
+   /**
+    * Move to the first child element with the given name of the current start element, skipping the
+    * subtrees of the preceding siblings
+    *
+    * @param reader  the reader, on a start element
+    * @param name  the child element name
+    * @return  true if the reader is on the child element, false if the reader is on the end element
+    * of the current element, which has no such child element
+    * @throws XMLStreamException  exception
+    */
+   public static boolean childElement(XMLStreamReader reader, QName name) throws XMLStreamException
+   {
+      boolean found = firstChildElement(reader);
+      while (found && !matches(reader, name))
+      {
+         skipElement(reader);
+         found = skipToChildElement(reader);
+      }
+      return found;
+   }
+
+   /**
+    * Move from the beginning of the document to the element at the given path
+    * (e.g. Envelope, Header, To), skipping every subtree not on the path; an empty path denotes the
+    * current element, or the root element when the reader is before it
+    *
+    * @param reader  the reader, before or on the document root element
+    * @param path  the element names, starting with the root element
+    * @return  true if the element has been found, false otherwise
+    * @throws XMLStreamException  exception
+    */
+   public static boolean path(XMLStreamReader reader, QName... path) throws XMLStreamException
+   {
+      if (reader.getEventType() != XMLStreamConstants.START_ELEMENT && !nextElement(reader))
+         return false;
+      if (path.length == 0)
+         return true;
+      if (!matches(reader, path[0]))
+         return false;
+      for (int i = 1; i < path.length; i++)
+      {
+         if (!childElement(reader, path[i]))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Get the name of the first child element of the element at the given path; for instance, the
+    * name of the first SOAP body child is returned for the path Envelope, Body
+    *
+    * @param reader  the reader, before or on the document root element
+    * @param path  the element names, starting with the root element; empty for the current element
+    * @return  the name of the first child element, null if there is none
+    * @throws XMLStreamException  exception
+    */
+   public static QName getFirstChildElementName(XMLStreamReader reader, QName... path) throws XMLStreamException
+   {
+      return path(reader, path) && firstChildElement(reader) ? reader.getName() : null;
+   }
+
+   /**
+    * Get the value of an attribute of the element at the given path
+    *
+    * @param reader  the reader, before or on the document root element
+    * @param attrName  the attribute name
+    * @param path  the element names, starting with the root element; empty for the current element
+    * @return  the attribute value, null if the element or the attribute is not present or the attribute value is empty
+    * @throws XMLStreamException  exception
+    */
+   public static String getAttributeValue(XMLStreamReader reader, QName attrName, QName... path) throws XMLStreamException
+   {
+      if (!path(reader, path))
+         return null;
+      String ns = attrName.getNamespaceURI();
+      String attr = reader.getAttributeValue(ns.length() > 0 ? ns : null, attrName.getLocalPart());
+      return (attr == null || attr.length() == 0) ? null : attr;
+   }
+
+   /**
+    * Get the element at the given path as a DOM fragment; only the element subtree is read into memory
+    *
+    * @param reader  the reader, before or on the document root element
+    * @param doc  the document the fragment is created with
+    * @param path  the element names, starting with the root element; empty for the current element
+    * @return  the element, null if not present
+    * @throws XMLStreamException  exception
+    */
+   public static Element getElement(XMLStreamReader reader, Document doc, QName... path) throws XMLStreamException
+   {
+      return path(reader, path) ? readElement(reader, doc) : null;
+   }
+
+   /**
+    * Read the subtree of the current start element into a DOM fragment, leaving the reader on the matching end element.
+    * The fragment carries the namespace declarations made within the subtree only.
+    *
+    * @param reader  the reader, on a start element
+    * @param doc  the document the fragment is created with
+    * @return  the element
+    * @throws XMLStreamException  exception
+    */
+   public static Element readElement(XMLStreamReader reader, Document doc) throws XMLStreamException
+   {
+      reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+      Element root = createElement(reader, doc);
+      Node current = root;
+      while (current != null)
+      {
+         switch (reader.next())
+         {
+            case XMLStreamConstants.START_ELEMENT:
+               current = current.appendChild(createElement(reader, doc));
+               break;
+            case XMLStreamConstants.END_ELEMENT:
+               current = (current == root) ? null : current.getParentNode();
+               break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+               current.appendChild(doc.createTextNode(reader.getText()));
+               break;
+            case XMLStreamConstants.CDATA:
+               current.appendChild(doc.createCDATASection(reader.getText()));
+               break;
+            case XMLStreamConstants.COMMENT:
+               current.appendChild(doc.createComment(reader.getText()));
+               break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+               current.appendChild(doc.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+               break;
+            default:
+               break;
+         }
+      }
+      return root;
+   }
+
+   /**
+    * Skip the subtree of the current start element, leaving the reader on the matching end element
+    *
+    * @param reader  the reader, on a start element
+    * @throws XMLStreamException  exception
+    */
+   public static void skipElement(XMLStreamReader reader) throws XMLStreamException
+   {
+      reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+      int depth = 1;
+      while (depth > 0)
+      {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT)
+            depth++;
+         else if (event == XMLStreamConstants.END_ELEMENT)
+            depth--;
+      }
+   }
+
+   /**
+    * Move to the next sibling start element, or to the end element of the parent
+    */
+   private static boolean skipToChildElement(XMLStreamReader reader) throws XMLStreamException
+   {
+      while (true)
+      {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT)
+            return true;
+         if (event == XMLStreamConstants.END_ELEMENT)
+            return false;
+      }
+   }
+
+   private static boolean matches(XMLStreamReader reader, QName name)
+   {
+      String namespaceURI = name.getNamespaceURI();
+      if (namespaceURI.length() > 0 && !namespaceURI.equals(reader.getNamespaceURI()))
+         return false;
+      return name.getLocalPart().equals(reader.getLocalName());
+   }
+
+   private static Element createElement(XMLStreamReader reader, Document doc)
+   {
+      Element element = DOMUtils.createElement(reader.getLocalName(), reader.getPrefix(), reader.getNamespaceURI(), doc);
+      int nsCount = reader.getNamespaceCount();
+      for (int i = 0; i < nsCount; i++)
+      {
+         String prefix = reader.getNamespacePrefix(i);
+         String qname = (prefix == null || prefix.length() == 0) ? "xmlns" : "xmlns:" + prefix;
+         String uri = reader.getNamespaceURI(i);
+         element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, qname, uri != null ? uri : "");
+      }
+      int attrCount = reader.getAttributeCount();
+      for (int i = 0; i < attrCount; i++)
+      {
+         String prefix = reader.getAttributePrefix(i);
+         String localName = reader.getAttributeLocalName(i);
+         String qname = (prefix == null || prefix.length() == 0) ? localName : prefix + ":" + localName;
+         String uri = reader.getAttributeNamespace(i);
+         element.setAttributeNS(uri != null && uri.length() > 0 ? uri : null, qname, reader.getAttributeValue(i));
+      }
+      return element;
+   }
+}
@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.jboss.ws.api.Log.LOGGER;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * The namespace-aware, secure-processing XML factories looked up (once) using a given classloader.
+ * Cached instances are strongly referenced by the cache when none of the factory classes belongs to that
+ * classloader (e.g. the JDK built-in factories). Otherwise they would keep the classloader reachable (and their
+ * cache entry alive) through their classes: they are then weakly referenced by the cache and kept alive by one
+ * of the factory classes instead, so that they go away together with the classloader. The factories of a given
+ * classloader are looked up by a single thread at a time, the other callers waiting for and sharing the result.
+ */
+final class XMLFactories
+{
+   /** the (non-standard) property to get CDATA sections reported as such, rather than as character events */
+   private static final String REPORT_CDATA_EVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+   /** the SAX property to set the lexical handler of a reader with */
+   static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+   /** the handler set on idle readers, not to retain the handlers (and trees) of past parses */
+   private static final DefaultHandler2 NO_HANDLER = new DefaultHandler2();
+
+   private static final ConcurrentWeakIdentityMap<ClassLoader, Entry> cache = new ConcurrentWeakIdentityMap<>();
+
+   /**
+    * The factories whose classes belong to the classloader they have been looked up with, attached to one of those
+    * classes and keyed by that classloader; being reachable from the class only, they are collected together with
+    * its classloader.
+    */
+   private static final ClassValue<Map<ClassLoader, XMLFactories>> anchors = new ClassValue<Map<ClassLoader, XMLFactories>>()
+   {
+      @Override
+      protected Map<ClassLoader, XMLFactories> computeValue(Class<?> type)
+      {
+         return new WeakHashMap<ClassLoader, XMLFactories>(2);
+      }
+   };
+
+   private final DocumentBuilderPool documentBuilderPool;
+   private final TransformerFactory transformerFactory;
+   private final XMLInputFactory inputFactory;
+   private final SAXParserFactory parserFactory;
+   private final Class<?> anchor;
+   private final BlockingQueue<XMLReader> idleReaders = new ArrayBlockingQueue<XMLReader>(Runtime.getRuntime().availableProcessors());
+
+   private XMLFactories(ClassLoader loader)
+   {
+      DocumentBuilderFactory dbf;
+      TransformerFactory tf;
+      XMLInputFactory xif;
+      SAXParserFactory spf;
+      ClassLoader oldLoader = SecurityActions.getContextClassLoader();
+      try
+      {
+         SecurityActions.setContextClassLoader(loader);
+         dbf = DocumentBuilderFactory.newInstance();
+         tf = TransformerFactory.newInstance();
+         xif = XMLInputFactory.newInstance();
+         spf = SAXParserFactory.newInstance();
+      }
+      finally
+      {
+         SecurityActions.setContextClassLoader(oldLoader);
+      }
+      dbf.setNamespaceAware(true);
+      try
+      {
+         dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      }
+      catch (ParserConfigurationException e)
+      {
+         LOGGER.cannotEnableSecureProcessing(dbf.getClass().getName(), e);
+      }
+      try
+      {
+         tf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      }
+      catch (TransformerConfigurationException e)
+      {
+         LOGGER.cannotEnableSecureProcessing(tf.getClass().getName(), e);
+      }
+      spf.setNamespaceAware(true);
+      try
+      {
+         spf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      }
+      catch (ParserConfigurationException | SAXException e)
+      {
+         LOGGER.cannotEnableSecureProcessing(spf.getClass().getName(), e);
+      }
+      xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+      xif.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      if (xif.isPropertySupported(REPORT_CDATA_EVENT))
+         xif.setProperty(REPORT_CDATA_EVENT, Boolean.TRUE);
+      LOGGER.usingXMLFactories(dbf.getClass().getName(), tf.getClass().getName(), xif.getClass().getName(), spf.getClass().getName(), loader);
+      this.documentBuilderPool = new DocumentBuilderPool(dbf);
+      this.transformerFactory = tf;
+      this.inputFactory = xif;
+      this.parserFactory = spf;
+      this.anchor = getClassOf(loader, dbf, tf, xif, spf);
+   }
+
+   /**
+    * Get the factories for the given classloader, looking them up if needed
+    *
+    * @param loader  the classloader, null for the classloader of this class
+    * @return  the factories
+    */
+   static XMLFactories getInstance(ClassLoader loader)
+   {
+      if (loader == null)
+         loader = XMLFactories.class.getClassLoader();
+      Entry entry = cache.get(loader);
+      if (entry == null)
+         entry = cache.computeIfAbsent(loader, l -> new Entry());
+      XMLFactories factories = entry.get();
+      if (factories == null)
+      {
+         synchronized (entry)
+         {
+            factories = entry.get();
+            if (factories == null)
+            {
+               factories = new XMLFactories(loader);
+               entry.set(loader, factories);
+            }
+         }
+      }
+      return factories;
+   }
+
+   /**
+    * The cache entry of a classloader, referencing its factories once they have been looked up
+    */
+   private static final class Entry
+   {
+      private volatile Supplier<XMLFactories> ref;
+
+      XMLFactories get()
+      {
+         Supplier<XMLFactories> r = ref;
+         return r != null ? r.get() : null;
+      }
+
+      void set(ClassLoader loader, XMLFactories factories)
+      {
+         if (factories.anchor == null)
+         {
+            ref = () -> factories;
+         }
+         else
+         {
+            Map<ClassLoader, XMLFactories> holder = anchors.get(factories.anchor);
+            synchronized (holder)
+            {
+               holder.put(loader, factories);
+            }
+            ref = new WeakReference<XMLFactories>(factories)::get;
+         }
+      }
+   }
+
+   /**
+    * Get one of the classes of the given factories belonging to the given classloader (or to one of its descendants)
+    *
+    * @return  the class, null if the factories do not reference the classloader
+    */
+   private static Class<?> getClassOf(ClassLoader loader, Object... factories)
+   {
+      for (Object factory : factories)
+      {
+         for (ClassLoader cl = factory.getClass().getClassLoader(); cl != null; cl = cl.getParent())
+         {
+            if (cl == loader)
+               return factory.getClass();
+         }
+      }
+      return null;
+   }
+
+   DocumentBuilderPool getDocumentBuilderPool()
+   {
+      return documentBuilderPool;
+   }
+
+   Transformer newTransformer() throws TransformerConfigurationException
+   {
+      synchronized (transformerFactory) //TransformerFactory is not required to be thread-safe
+      {
+         return transformerFactory.newTransformer();
+      }
+   }
+
+   /**
+    * Get a namespace-aware SAX reader for exclusive use, to be given back using {@link #releaseXMLReader(XMLReader)};
+    * readers are pooled like document builders, creating one costs as much as a small parse.
+    *
+    * @return  a reader
+    * @throws ParserConfigurationException  if a new reader cannot be created
+    * @throws SAXException  if a new reader cannot be created
+    */
+   XMLReader acquireXMLReader() throws ParserConfigurationException, SAXException
+   {
+      XMLReader reader = idleReaders.poll();
+      if (reader == null)
+      {
+         synchronized (parserFactory) //SAXParserFactory is not required to be thread-safe
+         {
+            reader = parserFactory.newSAXParser().getXMLReader();
+         }
+      }
+      return reader;
+   }
+
+   /**
+    * Give back a reader previously obtained through {@link #acquireXMLReader()}
+    *
+    * @param reader  the reader
+    */
+   void releaseXMLReader(XMLReader reader)
+   {
+      try
+      {
+         reader.setContentHandler(NO_HANDLER);
+         reader.setProperty(LEXICAL_HANDLER, NO_HANDLER);
+      }
+      catch (SAXException e)
+      {
+         return;
+      }
+      idleReaders.offer(reader);
+   }
+
+   XMLStreamReader createXMLStreamReader(InputStream in) throws XMLStreamException
+   {
+      synchronized (inputFactory) //XMLInputFactory is not required to be thread-safe
+      {
+         return inputFactory.createXMLStreamReader(in);
+      }
+   }
+
+   XMLStreamReader createXMLStreamReader(Reader reader) throws XMLStreamException
+   {
+      synchronized (inputFactory) //XMLInputFactory is not required to be thread-safe
+      {
+         return inputFactory.createXMLStreamReader(reader);
+      }
+   }
+}
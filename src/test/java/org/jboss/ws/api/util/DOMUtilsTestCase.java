@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Tests of {@link DOMUtils}
+ */
+public class DOMUtilsTestCase
+{
+   private static final String XML = "<ns:r xmlns:ns='urn:test' ns:a='1'>t<![CDATA[cd]]><!--c--><e/></ns:r>";
+
+   @Test
+   public void testSAXSourceToElement() throws Exception
+   {
+      XMLReader reader = newXMLReader(false);
+      assertContent(DOMUtils.sourceToElement(new SAXSource(reader, new InputSource(new StringReader(XML))), newBuilder(true)), true);
+   }
+
+   @Test
+   public void testSAXSourceWithPrefixesToElement() throws Exception
+   {
+      XMLReader reader = newXMLReader(true);
+      assertContent(DOMUtils.sourceToElement(new SAXSource(reader, new InputSource(new StringReader(XML))), newBuilder(true)), true);
+   }
+
+   @Test
+   public void testSAXSourceToElementNotNamespaceAware() throws Exception
+   {
+      XMLReader reader = newXMLReader(false);
+      assertContent(DOMUtils.sourceToElement(new SAXSource(reader, new InputSource(new StringReader(XML))), newBuilder(false)), false);
+   }
+
+   @Test
+   public void testInputSourceToElement() throws Exception
+   {
+      assertContent(DOMUtils.sourceToElement(new SAXSource(new InputSource(new StringReader(XML))), newBuilder(true)), true);
+      assertContent(DOMUtils.sourceToElement(new SAXSource(new InputSource(new StringReader(XML))), newBuilder(false)), false);
+   }
+
+   /**
+    * Searching a large tree must not allocate per visited element (e.g. a QName for each element name)
+    */
+   @Test
+   public void testSearchDoesNotAllocatePerElement() throws Exception
+   {
+      ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+      Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+      com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+      Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled());
+
+      Document doc = newBuilder(true).newDocument();
+      Element root = doc.createElementNS("urn:test", "t:root");
+      doc.appendChild(root);
+      for (int i = 0; i < 500; i++)
+      {
+         Element group = doc.createElementNS("urn:test", "t:group");
+         root.appendChild(group);
+         for (int j = 0; j < 100; j++)
+         {
+            group.appendChild(doc.createElementNS("urn:test", "t:item"));
+         }
+      }
+      final int elements = 500 * 101;
+      QName qname = new QName("urn:test", "missing");
+
+      long threadId = Thread.currentThread().getId();
+      long minAllocated = Long.MAX_VALUE;
+      for (int i = 0; i < 20; i++)
+      {
+         long start = allocationBean.getThreadAllocatedBytes(threadId);
+         assertTrue(DOMUtils.getChildElementsAsList(root, qname, true).isEmpty());
+         assertTrue(DOMUtils.getChildElementsAsList(root, "missing", true).isEmpty());
+         minAllocated = Math.min(minAllocated, allocationBean.getThreadAllocatedBytes(threadId) - start);
+      }
+      assertTrue("Allocated " + minAllocated + " bytes searching " + elements + " elements twice", minAllocated < elements);
+   }
+
+   // compact trees: the same input parsed by parseCompact and parse must give equal trees and output
+
+   @Test
+   public void testCompactWideTree() throws Exception
+   {
+      // more than 65535 siblings, attributes and text characters, and a subtree of more than 65535 nodes
+      // followed by a sibling, for distances and offsets that do not fit in 16 bits
+      StringBuilder sb = new StringBuilder("<r><big>");
+      for (int i = 0; i < 70000; i++)
+      {
+         sb.append("<e a='").append(i).append("'>").append(i % 10).append("</e>");
+      }
+      sb.append("</big><after b='x'>tail</after>");
+      for (int i = 0; i < 70000; i++)
+      {
+         sb.append("<s/>");
+      }
+      assertCompactEqualsParse(sb.append("</r>").toString());
+   }
+
+   @Test
+   public void testCompactDeepTree() throws Exception
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 1000; i++)
+      {
+         sb.append("<d").append(i % 3 == 0 ? " xmlns='urn:d" + i + "'" : "").append(" n='").append(i).append("'>t");
+      }
+      for (int i = 999; i >= 0; i--)
+      {
+         sb.append("</d>");
+      }
+      assertCompactEqualsParse(sb.toString());
+   }
+
+   @Test
+   public void testCompactCharacters() throws Exception
+   {
+      assertCompactEqualsParse("<r a='caf\u00e9 \u00ff'>Latin-1 only: \u00e0\u00e9\u00ee\u00f5\u00fc</r>");
+      assertCompactEqualsParse("<\u00e9l\u00e9ment \u4e2d='\u6587'>\u20ac \ud83d\ude00<!-- \ud83d\udc4d -->"
+            + "<![CDATA[\u0100\ud800\udc00]]><?pi \u03c0?></\u00e9l\u00e9ment>");
+   }
+
+   @Test
+   public void testCompactMixedContent() throws Exception
+   {
+      assertCompactEqualsParse("<!-- top --><?top data?>\n<r>\n  <!-- c --><?pi?><?pi with data?><![CDATA[<&>]]>text&amp;&lt;"
+            + "<![CDATA[]]><e/>\n  <e>a<!---->b<![CDATA[c]]>d</e>\r\n</r><!-- bottom --><?bottom?>");
+   }
+
+   @Test
+   public void testCompactNamespaces() throws Exception
+   {
+      assertCompactEqualsParse("<a:r xmlns:a='urn:a' xmlns='urn:d' a:x='1' y='2'><e><a:e xmlns:a='urn:a2' a:x='3'/>"
+            + "<n xmlns=''><m/></n><d:e xmlns:d='urn:d' d:x='4'/></e><a:e a:x='5' xmlns:b='urn:b' b:y='6'/></a:r>");
+   }
+
+   @Test
+   public void testCompactTreeIsReadOnly() throws Exception
+   {
+      Element root = DOMUtils.parseCompact(new StringReader("<r a='1'>t<e/></r>"));
+      Document doc = root.getOwnerDocument();
+      final Node text = root.getFirstChild();
+      final Element child = (Element) root.getLastChild();
+      assertReadOnly(() -> root.appendChild(child));
+      assertReadOnly(() -> root.removeChild(text));
+      assertReadOnly(() -> root.setAttribute("a", "2"));
+      assertReadOnly(() -> root.removeAttribute("a"));
+      assertReadOnly(() -> root.setTextContent("x"));
+      assertReadOnly(() -> root.getAttributeNode("a").setValue("2"));
+      assertReadOnly(() -> text.setNodeValue("x"));
+      assertReadOnly(() -> doc.createElement("x"));
+      assertReadOnly(() -> doc.removeChild(root));
+      assertEquals("1", root.getAttribute("a"));
+      assertEquals("t", root.getTextContent());
+
+      // a modifiable copy can be made by importing the nodes
+      Document copy = newBuilder(true).newDocument();
+      copy.appendChild(copy.importNode(root, true));
+      copy.getDocumentElement().setAttribute("a", "2");
+      assertEquals("2", copy.getDocumentElement().getAttribute("a"));
+   }
+
+   @Test
+   public void testCompactDocumentTypes() throws Exception
+   {
+      // the doctype is dropped, entities declared in the internal subset are not supported
+      Element root = DOMUtils.parseCompact(new StringReader("<!DOCTYPE a [<!ELEMENT a ANY>]><a>t</a>"));
+      assertNull(root.getOwnerDocument().getDoctype());
+      assertEquals("t", root.getTextContent());
+
+      String entities = "<!DOCTYPE a [<!ENTITY e 'x'>]><a>&e;</a>";
+      assertEquals("x", DOMUtils.parse(entities, DOMUtils.getDocumentBuilderPool()).getTextContent());
+      try
+      {
+         DOMUtils.parseCompact(new StringReader(entities));
+         fail("Expected a parse failure");
+      }
+      catch (IOException e)
+      {
+         // expected
+      }
+   }
+
+   private static void assertCompactEqualsParse(String xml) throws Exception
+   {
+      byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+      Document parsed = DOMUtils.parse(new ByteArrayInputStream(bytes), DOMUtils.getDocumentBuilderPool()).getOwnerDocument();
+      Document compact = DOMUtils.parseCompact(new ByteArrayInputStream(bytes)).getOwnerDocument();
+      Document compactChars = DOMUtils.parseCompact(new StringReader(xml)).getOwnerDocument();
+      for (Document doc : new Document[] { compact, compactChars })
+      {
+         assertTrue(doc.isEqualNode(parsed));
+         assertTrue(parsed.isEqualNode(doc));
+         assertTrue(doc.getDocumentElement().isEqualNode(parsed.getDocumentElement()));
+         assertTrue(parsed.getDocumentElement().isEqualNode(doc.getDocumentElement()));
+         assertEquals(write(parsed), write(doc));
+      }
+   }
+
+   private static String write(Node node) throws IOException
+   {
+      StringWriter writer = new StringWriter();
+      DOMUtils.write(node, writer, false);
+      return writer.toString();
+   }
+
+   private static void assertReadOnly(Runnable mutation)
+   {
+      try
+      {
+         mutation.run();
+         fail("Expected a read-only node");
+      }
+      catch (DOMException e)
+      {
+         assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+      }
+   }
+
+   private static void assertContent(Element root, boolean namespaceAware)
+   {
+      assertEquals("ns:r", root.getNodeName());
+      if (namespaceAware)
+      {
+         assertEquals("urn:test", root.getNamespaceURI());
+         assertEquals("r", root.getLocalName());
+         assertEquals("1", root.getAttributeNS("urn:test", "a"));
+         assertEquals("urn:test", root.getAttributeNS("http://www.w3.org/2000/xmlns/", "ns"));
+      }
+      else
+      {
+         assertNull(root.getLocalName());
+         assertEquals("1", root.getAttribute("ns:a"));
+         assertEquals("urn:test", root.getAttribute("xmlns:ns"));
+      }
+      assertEquals(2, root.getAttributes().getLength());
+      Node child = root.getFirstChild();
+      assertEquals(Node.TEXT_NODE, child.getNodeType());
+      assertEquals("t", child.getNodeValue());
+      child = child.getNextSibling();
+      assertEquals(Node.CDATA_SECTION_NODE, child.getNodeType());
+      assertEquals("cd", child.getNodeValue());
+      child = child.getNextSibling();
+      assertEquals(Node.COMMENT_NODE, child.getNodeType());
+      assertEquals("c", child.getNodeValue());
+      child = child.getNextSibling();
+      assertEquals(Node.ELEMENT_NODE, child.getNodeType());
+      assertEquals("e", child.getNodeName());
+      assertNull(child.getNextSibling());
+   }
+
+   private static DocumentBuilder newBuilder(boolean namespaceAware) throws Exception
+   {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(namespaceAware);
+      return factory.newDocumentBuilder();
+   }
+
+   private static XMLReader newXMLReader(boolean namespacePrefixes) throws Exception
+   {
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      factory.setFeature("http://xml.org/sax/features/namespace-prefixes", namespacePrefixes);
+      return factory.newSAXParser().getXMLReader();
+   }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * Round-trip tests of the serialization performed by {@link DOMUtils#write(Node, java.io.Writer, boolean)},
+ * against the output of the JDK identity transformer
+ */
+public class DOMWriterTestCase
+{
+   private static final String SPECIAL = "<&\">\r\t\n'";
+
+   @Test
+   public void testSubtreeWithAncestorDeclarations() throws Exception
+   {
+      Document doc = parse("<a:r xmlns:a='urn:a' xmlns:b='urn:b' xmlns='urn:d'><a:p><b:c a:x='1' y='2'><d/><a:e/></b:c></a:p></a:r>");
+      Element c = (Element) doc.getElementsByTagNameNS("urn:b", "c").item(0);
+      String written = write(c);
+      assertEqualNodes(parse(transform(c)), parse(written));
+
+      Element root = parse(written).getDocumentElement();
+      assertEquals("urn:b", root.getNamespaceURI());
+      assertEquals("1", root.getAttributeNS("urn:a", "x"));
+      assertEquals("2", root.getAttributeNS(null, "y"));
+      assertEquals("urn:d", root.getFirstChild().getNamespaceURI());
+      assertEquals("urn:a", root.getLastChild().getNamespaceURI());
+   }
+
+   @Test
+   public void testEscaping() throws Exception
+   {
+      Document doc = newDocument();
+      Element root = doc.createElementNS(null, "r");
+      doc.appendChild(root);
+      root.setAttributeNS(null, "a", SPECIAL);
+      root.appendChild(doc.createTextNode(SPECIAL));
+
+      String written = write(doc);
+      assertEquals("<r a=\"&lt;&amp;&quot;&gt;&#xD;&#x9;&#xA;'\">&lt;&amp;\"&gt;&#xD;\t\n'</r>", written);
+      Element parsed = parse(written).getDocumentElement();
+      assertEquals(SPECIAL, parsed.getAttribute("a"));
+      assertEquals(SPECIAL, parsed.getTextContent());
+      assertEqualNodes(parse(transform(doc)), parse(written));
+   }
+
+   @Test
+   public void testCommentsProcessingInstructionsAndCDATA() throws Exception
+   {
+      String xml = "<!--before--><?top data?><r xmlns=\"urn:r\"><!-- c --><?pi?><?pi with data?>"
+            + "<![CDATA[<&>]]><![CDATA[a]]]]><![CDATA[>b]]>text<e/></r><!--after-->";
+      Document doc = parse(xml);
+      assertEquals(xml, write(doc));
+      assertEquals(transform(doc), write(doc));
+      assertEquals("<e xmlns=\"urn:r\"/>", write(doc.getElementsByTagNameNS("urn:r", "e").item(0)));
+   }
+
+   @Test
+   public void testPrettyAndCompactDocuments() throws Exception
+   {
+      String compact = "<s:Envelope xmlns:s='urn:s'><s:Header><h a='1'>v</h></s:Header><s:Body><p:op xmlns:p='urn:p'><arg/></p:op></s:Body></s:Envelope>";
+      Document doc = parse(compact);
+      assertEquals(transform(doc), write(doc));
+
+      Transformer transformer = TransformerFactory.newInstance().newTransformer();
+      transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+      StringWriter pretty = new StringWriter();
+      transformer.transform(new DOMSource(doc), new StreamResult(pretty));
+      assertTrue(pretty.toString().contains("\n"));
+
+      Document prettyDoc = parse(pretty.toString());
+      assertEquals(transform(prettyDoc), write(prettyDoc));
+      assertEqualNodes(prettyDoc, parse(write(prettyDoc)));
+   }
+
+   @Test
+   public void testOutputs() throws Exception
+   {
+      Document doc = parse("<r a='caf\u00e9'>\u20ac \ud83d\ude00<e/></r>");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      DOMUtils.write(doc, out, false);
+      byte[] bytes = out.toByteArray();
+      assertEqualNodes(doc, parse(new InputSource(new ByteArrayInputStream(bytes))));
+
+      ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 10);
+      DOMUtils.write(doc, buffer, false);
+      assertArrayEquals(bytes, Arrays.copyOf(buffer.array(), buffer.position()));
+
+      StringWriter writer = new StringWriter();
+      DOMUtils.write(doc, writer, true);
+      assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + writer, new String(bytes, StandardCharsets.UTF_8));
+   }
+
+   private static void assertEqualNodes(Node expected, Node actual) throws Exception
+   {
+      assertTrue(write(expected) + " != " + write(actual), expected.isEqualNode(actual));
+   }
+
+   private static String write(Node node) throws Exception
+   {
+      StringWriter writer = new StringWriter();
+      DOMUtils.write(node, writer, true);
+      return writer.toString();
+   }
+
+   private static String transform(Node node) throws Exception
+   {
+      Transformer transformer = TransformerFactory.newInstance().newTransformer();
+      transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+      StringWriter writer = new StringWriter();
+      transformer.transform(new DOMSource(node), new StreamResult(writer));
+      return writer.toString();
+   }
+
+   private static Document newDocument() throws Exception
+   {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      return factory.newDocumentBuilder().newDocument();
+   }
+
+   private static Document parse(String xml) throws Exception
+   {
+      return parse(new InputSource(new StringReader(xml)));
+   }
+
+   private static Document parse(InputSource source) throws Exception
+   {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      return factory.newDocumentBuilder().parse(source);
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests of {@link ParseCache}
+ */
+public class ParseCacheTestCase
+{
+   private static final String POLICY = "<wsp:Policy xmlns:wsp='http://www.w3.org/ns/ws-policy' wsp:Name='p'>"
+         + "<wsp:ExactlyOne><wsp:All><a>text</a></wsp:All></wsp:ExactlyOne></wsp:Policy>";
+
+   private DocumentBuilder builder;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      builder = factory.newDocumentBuilder();
+   }
+
+   @Test
+   public void testHitsAndMisses() throws Exception
+   {
+      ParseCache cache = new ParseCache(1024 * 1024, 1024);
+      cache.parse(POLICY, builder);
+      cache.parse(POLICY, builder);
+      cache.parse(fragment(1), builder);
+      cache.parse(new StringBuilder(POLICY), builder);
+      assertEquals(2, cache.getHits());
+      assertEquals(2, cache.getMisses());
+      assertEquals(0, cache.getUncached());
+      assertEquals(2, cache.size());
+      assertTrue(cache.getTotalSize() > 2 * POLICY.length());
+
+      // too long to be cached: parsed each time, neither a hit nor a miss
+      StringBuilder sb = new StringBuilder("<r>");
+      while (sb.length() <= 1024)
+         sb.append("<e/>");
+      String large = sb.append("</r>").toString();
+      assertEquals("r", cache.parse(large, builder).getNodeName());
+      assertEquals("r", cache.parse(large, builder).getNodeName());
+      assertEquals(2, cache.getHits());
+      assertEquals(2, cache.getMisses());
+      assertEquals(2, cache.getUncached());
+      assertEquals(2, cache.size());
+
+      cache.clear();
+      assertEquals(0, cache.size());
+      assertEquals(0, cache.getTotalSize());
+   }
+
+   @Test
+   public void testCopiesAreIsolated() throws Exception
+   {
+      ParseCache cache = new ParseCache(1024 * 1024, 1024);
+      Element first = cache.parse(POLICY, builder);
+      Element second = cache.parse(POLICY, builder);
+      assertNotSame(first.getOwnerDocument(), second.getOwnerDocument());
+
+      // changing the parsed or the returned trees must not affect the cached one
+      first.setAttribute("changed", "1");
+      second.removeChild(second.getFirstChild());
+      second.setAttributeNS("http://www.w3.org/ns/ws-policy", "wsp:Name", "q");
+      second.appendChild(second.getOwnerDocument().createElement("added"));
+
+      Element third = cache.parse(POLICY, builder);
+      assertEquals(1, third.getChildNodes().getLength());
+      assertEquals("ExactlyOne", third.getFirstChild().getLocalName());
+      assertEquals("p", third.getAttributeNS("http://www.w3.org/ns/ws-policy", "Name"));
+      assertEquals("", third.getAttribute("changed"));
+      assertEquals("text", third.getTextContent());
+      assertTrue(third.isEqualNode(builder.parse(new InputSource(new StringReader(POLICY))).getDocumentElement()));
+   }
+
+   @Test
+   public void testLeastRecentlyUsedEviction() throws Exception
+   {
+      ParseCache probe = new ParseCache(Long.MAX_VALUE, 1024);
+      probe.parse(fragment(0), builder);
+      long entrySize = probe.getTotalSize();
+
+      // room for two entries of the same estimated size
+      ParseCache cache = new ParseCache(entrySize * 2 + entrySize / 2, 1024);
+      cache.parse(fragment(1), builder);
+      cache.parse(fragment(2), builder);
+      assertEquals(2 * entrySize, cache.getTotalSize());
+      cache.parse(fragment(1), builder);
+      cache.parse(fragment(3), builder);
+      assertEquals(1, cache.getEvictions());
+      assertEquals(2, cache.size());
+      assertEquals(2 * entrySize, cache.getTotalSize());
+
+      // the least recently used entry (2) has been evicted, the recently used one (1) retained
+      long misses = cache.getMisses();
+      cache.parse(fragment(1), builder);
+      assertEquals(misses, cache.getMisses());
+      cache.parse(fragment(2), builder);
+      assertEquals(misses + 1, cache.getMisses());
+      assertEquals(2, cache.getEvictions());
+
+      // a tree estimated larger than the whole bound is not cached at all
+      ParseCache small = new ParseCache(entrySize - 1, 1024);
+      small.parse(fragment(1), builder);
+      assertEquals(0, small.size());
+      assertEquals(1, small.getUncached());
+   }
+
+   /**
+    * @return  fragments of the same structure and length, thus of the same estimated size
+    */
+   private static String fragment(int i)
+   {
+      return "<f xmlns='urn:f' id='" + i + "'><a>" + i + "</a><b x='" + i + "'/></f>";
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests the resource limits enforced by {@link DOMUtils#parse(InputSource, ParseLimits)}: each limit aborts
+ * the parse once exceeded and is counted, parses within the limits give the same tree as a regular parse.
+ */
+public class ParseLimitsTestCase
+{
+   private static final String XML = "<!-- c --><?pi data?><a:r xmlns:a='urn:a' xmlns='urn:d' a:x='1' y='2'>text&amp;more"
+         + "<e><![CDATA[<cdata>]]><!-- comment --><n xmlns=''>\u00e9\ud83d\ude00</n></e><a:e a:x='3'/></a:r>";
+
+   @Test
+   public void testWithinLimits() throws Exception
+   {
+      ParseLimits limits = new ParseLimits(1000, 3, 4, 10);
+      Element expected = DOMUtils.parse(XML, DOMUtils.getDocumentBuilderPool());
+      assertEqualTrees(expected, DOMUtils.parse(XML, limits));
+      assertEqualTrees(expected, DOMUtils.parse(new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)), limits));
+      assertEqualTrees(expected, DOMUtils.parse(new InputSource(new StringReader(XML)), limits));
+      assertEqualTrees(expected, DOMUtils.parse(XML, new ParseLimits(0, 0, 0, 0)));
+      assertEquals(0, limits.getAborts());
+   }
+
+   @Test
+   public void testBytes() throws Exception
+   {
+      String xml = "<r>0123456789</r>";
+      ParseLimits limits = new ParseLimits(xml.length(), 0, 0, 0);
+      assertEquals("0123456789", DOMUtils.parse(xml, limits).getTextContent());
+      assertEquals(0, limits.getAborts());
+
+      limits = new ParseLimits(xml.length() - 1, 0, 0, 0);
+      assertExceeded(limits, ParseLimits.Limit.BYTES, xml, 1);
+      assertExceeded(limits, ParseLimits.Limit.BYTES, new InputSource(new StringReader(xml)), 2);
+      assertExceeded(limits, ParseLimits.Limit.BYTES, new InputSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))), 3);
+   }
+
+   @Test
+   public void testBytesCountCharactersOfCharacterStreams() throws Exception
+   {
+      // 17 characters, 27 bytes once encoded in UTF-8
+      String xml = "<r>\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9</r>";
+      ParseLimits limits = new ParseLimits(20, 0, 0, 0);
+      DOMUtils.parse(xml, limits);
+      DOMUtils.parse(new InputSource(new StringReader(xml)), limits);
+      assertEquals(0, limits.getAborts());
+      assertExceeded(limits, ParseLimits.Limit.BYTES, new InputSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))), 1);
+   }
+
+   @Test
+   public void testDepth() throws Exception
+   {
+      ParseLimits limits = new ParseLimits(0, 3, 0, 0);
+      DOMUtils.parse("<a><b><c/></b><b><c/></b></a>", limits);
+      assertEquals(0, limits.getAborts());
+      assertExceeded(limits, ParseLimits.Limit.DEPTH, "<a><b><c><d/></c></b></a>", 1);
+      assertExceeded(limits, ParseLimits.Limit.DEPTH, new InputSource(new StringReader("<a><b/><b><c><d>text</d></c></b></a>")), 2);
+   }
+
+   @Test
+   public void testAttributes() throws Exception
+   {
+      ParseLimits limits = new ParseLimits(0, 0, 2, 0);
+      DOMUtils.parse("<a x='1' y='2'><b xmlns:p='urn:p' p:x='1'/><c xmlns='urn:c'/></a>", limits);
+      assertEquals(0, limits.getAborts());
+      assertExceeded(limits, ParseLimits.Limit.ATTRIBUTES, "<a><b x='1' y='2' z='3'/></a>", 1);
+      // namespace declarations count as attributes
+      assertExceeded(limits, ParseLimits.Limit.ATTRIBUTES, "<a xmlns='urn:a' xmlns:p='urn:p' p:x='1'/>", 2);
+      assertExceeded(limits, ParseLimits.Limit.ATTRIBUTES, "<a xmlns='urn:a' xmlns:p='urn:p' xmlns:q='urn:q'/>", 3);
+   }
+
+   @Test
+   public void testTextLength() throws Exception
+   {
+      ParseLimits limits = new ParseLimits(0, 0, 0, 5);
+      // attribute values are not subject to the text length limit
+      DOMUtils.parse("<a x='0123456789'>01234<b>01234</b><![CDATA[01234]]><!--01234-->01234</a>", limits);
+      assertEquals(0, limits.getAborts());
+      assertExceeded(limits, ParseLimits.Limit.TEXT_LENGTH, "<a>012345</a>", 1);
+      // character events split by entity references account to the same text node
+      assertExceeded(limits, ParseLimits.Limit.TEXT_LENGTH, "<a>01&amp;23&lt;</a>", 2);
+      assertExceeded(limits, ParseLimits.Limit.TEXT_LENGTH, "<a><![CDATA[012345]]></a>", 3);
+      assertExceeded(limits, ParseLimits.Limit.TEXT_LENGTH, "<a><!--012345--></a>", 4);
+   }
+
+   @Test
+   public void testSharedLimits() throws Exception
+   {
+      ParseLimits limits = new ParseLimits(100, 2, 1, 3);
+      assertExceeded(limits, ParseLimits.Limit.DEPTH, "<a><b><c/></b></a>", 1);
+      DOMUtils.parse("<a x='1'><b>123</b></a>", limits);
+      assertExceeded(limits, ParseLimits.Limit.TEXT_LENGTH, "<a>1234</a>", 2);
+      assertExceeded(limits, ParseLimits.Limit.ATTRIBUTES, "<a x='1' y='2'/>", 3);
+      assertEquals(3, limits.getAborts());
+   }
+
+   private static void assertExceeded(ParseLimits limits, ParseLimits.Limit limit, String xml, long aborts) throws IOException
+   {
+      try
+      {
+         DOMUtils.parse(xml, limits);
+         fail("Expected the " + limit + " limit to be exceeded");
+      }
+      catch (ParseLimitExceededException e)
+      {
+         assertEquals(limit, e.getLimit());
+      }
+      assertEquals(aborts, limits.getAborts());
+   }
+
+   private static void assertExceeded(ParseLimits limits, ParseLimits.Limit limit, InputSource source, long aborts) throws IOException
+   {
+      try
+      {
+         DOMUtils.parse(source, limits);
+         fail("Expected the " + limit + " limit to be exceeded");
+      }
+      catch (ParseLimitExceededException e)
+      {
+         assertEquals(limit, e.getLimit());
+      }
+      assertEquals(aborts, limits.getAborts());
+   }
+
+   private static void assertEqualTrees(Element expected, Element actual) throws IOException
+   {
+      assertTrue(expected.isEqualNode(actual));
+      assertTrue(expected.getOwnerDocument().isEqualNode(actual.getOwnerDocument()));
+      assertEquals(write(expected), write(actual));
+   }
+
+   private static String write(Element element) throws IOException
+   {
+      StringWriter writer = new StringWriter();
+      DOMUtils.write(element.getOwnerDocument(), writer, false);
+      return writer.toString();
+   }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests of {@link PathQuery}, as compiled by {@link DOMUtils#compilePaths(Map, String...)}
+ */
+public class PathQueryTestCase
+{
+   private static final String S = "http://schemas.xmlsoap.org/soap/envelope/";
+   private static final String WSA = "http://www.w3.org/2005/08/addressing";
+   private static final String XML = "<s:Envelope xmlns:s='" + S + "' xmlns:wsa='" + WSA + "'>"
+         + "<s:Header><wsa:To>to</wsa:To><wsa:Action>action</wsa:Action><x:Other xmlns:x='urn:x'/><wsa:To>to2</wsa:To></s:Header>"
+         + "<s:Body><p:op xmlns:p='urn:p'><item>1</item><item>2</item><p:item>3</p:item></p:op></s:Body></s:Envelope>";
+
+   @Test
+   public void testMultiplePathsWithSharedPrefixes() throws Exception
+   {
+      Map<String, String> ns = new HashMap<String, String>();
+      ns.put("s", S);
+      ns.put("wsa", WSA);
+      PathQuery query = DOMUtils.compilePaths(ns, "/{s}Envelope/{s}Header/{wsa}To", "/Envelope/Header/{wsa}Action",
+            "/Envelope/{s}Body/{urn:p}op", "/Envelope/Header/{urn:missing}To");
+      assertEquals(4, query.getPaths().size());
+
+      PathQuery.Result result = query.evaluate(parse(XML));
+      assertEquals(Arrays.asList("to", "to2"), texts(result.getAll(0)));
+      assertEquals("action", result.getFirst(1).getTextContent());
+      assertEquals("op", result.getFirst("/Envelope/{s}Body/{urn:p}op").getLocalName());
+      assertNull(result.getFirst(3));
+      assertEquals(0, result.getAll(3).size());
+      assertNull(result.getFirst("/not/compiled"));
+   }
+
+   @Test
+   public void testNamespaces() throws Exception
+   {
+      Document doc = parse(XML);
+      PathQuery.Result result = DOMUtils.compilePaths("/Envelope/Body/op/item", "/Envelope/Body/op/{}item",
+            "/Envelope/Body/op/{urn:p}item", "/{}Envelope").evaluate(doc);
+      // no namespace matches any namespace, {} matches no namespace only
+      assertEquals(Arrays.asList("1", "2", "3"), texts(result.getAll(0)));
+      assertEquals(Arrays.asList("1", "2"), texts(result.getAll(1)));
+      assertEquals(Arrays.asList("3"), texts(result.getAll(2)));
+      assertNull(result.getFirst(3));
+
+      Map<String, String> ns = new HashMap<String, String>();
+      ns.put("none", "");
+      assertEquals(2, DOMUtils.compilePaths(ns, "/Envelope/Body/op/{none}item").evaluate(doc).getAll(0).size());
+   }
+
+   @Test
+   public void testWildcards() throws Exception
+   {
+      PathQuery.Result result = DOMUtils.compilePaths("/Envelope/Header/*", "/Envelope/Header/{" + WSA + "}*",
+            "/*/Body/*/{}*", "/Envelope/*/*/{urn:p}*").evaluate(parse(XML).getDocumentElement());
+      assertEquals(4, result.getAll(0).size());
+      assertEquals(Arrays.asList("to", "action", "to2"), texts(result.getAll(1)));
+      assertEquals(Arrays.asList("1", "2"), texts(result.getAll(2)));
+      assertEquals(Arrays.asList("3"), texts(result.getAll(3)));
+   }
+
+   @Test
+   public void testEvaluateFirst() throws Exception
+   {
+      Document doc = parse(XML);
+      PathQuery query = DOMUtils.compilePaths("/Envelope/Header/*", "/Envelope/Body/op/item", "/Envelope/Header/{" + WSA + "}To",
+            "/Envelope/Missing", "/Envelope");
+      PathQuery.Result all = query.evaluate(doc);
+      PathQuery.Result first = query.evaluateFirst(doc);
+      for (int i = 0; i < query.getPaths().size(); i++)
+      {
+         assertSame(all.getFirst(i), first.getFirst(i));
+         assertEquals(all.getFirst(i) != null ? 1 : 0, first.getAll(i).size());
+      }
+      assertEquals(4, all.getAll(0).size());
+      assertEquals(3, all.getAll(1).size());
+   }
+
+   @Test
+   public void testInvalidExpressions()
+   {
+      for (String path : new String[] { null, "", "/", "Envelope", "/a//b", "/a/", "/{urn:x", "/{urn:x}", "/a{b}",
+            "/soap:Envelope/soap:Body", "/Envelope/{urn:x}p:Body", "/1a", "/a b", "/a/-b" })
+      {
+         try
+         {
+            DOMUtils.compilePaths(path);
+            fail("Expected failure for " + path);
+         }
+         catch (IllegalArgumentException e)
+         {
+            // expected
+         }
+      }
+      DOMUtils.compilePaths("/_a.b-c/\u00e9l\u00e9ment/a1");
+   }
+
+   @Test
+   public void testCompiledQueriesAreCached()
+   {
+      Map<String, String> ns = new HashMap<String, String>();
+      ns.put("s", S);
+      String[] paths = { "/{s}Envelope/{s}Body" };
+      PathQuery query = DOMUtils.compilePaths(ns, paths);
+      assertSame(query, DOMUtils.compilePaths(ns, "/{s}Envelope/{s}Body"));
+
+      // the cache key is not affected by later changes to the arguments
+      paths[0] = "/{s}Envelope/{s}Header";
+      ns.put("s", WSA);
+      assertNotSame(query, DOMUtils.compilePaths(ns, paths));
+      ns.put("s", S);
+      assertSame(query, DOMUtils.compilePaths(ns, "/{s}Envelope/{s}Body"));
+
+      // a query in use stays cached while many others are compiled
+      for (int i = 0; i < 2000; i++)
+      {
+         DOMUtils.compilePaths("/Envelope/e" + i);
+         assertSame(query, DOMUtils.compilePaths(ns, "/{s}Envelope/{s}Body"));
+      }
+      PathQuery late = DOMUtils.compilePaths("/Envelope/late");
+      assertSame(late, DOMUtils.compilePaths("/Envelope/late"));
+   }
+
+   private static List<String> texts(List<Element> elements)
+   {
+      List<String> texts = new ArrayList<String>();
+      for (Element element : elements)
+      {
+         texts.add(element.getTextContent());
+      }
+      return texts;
+   }
+
+   private static Document parse(String xml) throws Exception
+   {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+   }
+}
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the caching of the service lookups performed by {@link ServiceLoader}, counting the resource lookups
+ * that reach the classloader.
+ */
+public class ServiceLoaderTestCase
+{
+   private static final String SERVICE = "org.jboss.ws.api.util.test.Service";
+   private static final String MISSING_SERVICE = "org.jboss.ws.api.util.test.MissingService";
+
+   private File classesDir;
+   private CountingClassLoader loader;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      classesDir = Files.createTempDirectory("services").toFile();
+      File servicesDir = new File(classesDir, "META-INF/services");
+      servicesDir.mkdirs();
+      Files.write(new File(servicesDir, SERVICE).toPath(), "java.util.ArrayList\n".getBytes(StandardCharsets.UTF_8));
+      loader = new CountingClassLoader(classesDir);
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      ServiceLoader.clearCache(loader);
+      loader.close();
+      delete(classesDir);
+   }
+
+   @Test
+   public void testMissingServiceIsLookedUpOnce()
+   {
+      for (int i = 0; i < 10; i++)
+      {
+         assertNull(ServiceLoader.loadService(MISSING_SERVICE, null, loader));
+      }
+      assertEquals(1, loader.getLookups("META-INF/services/" + MISSING_SERVICE));
+      assertEquals(1, loader.getLookups(ServiceLoader.SERVICE_INDEX));
+   }
+
+   @Test
+   public void testServiceIsLookedUpOnce()
+   {
+      for (int i = 0; i < 10; i++)
+      {
+         assertTrue(ServiceLoader.loadService(SERVICE, null, loader) instanceof ArrayList);
+      }
+      assertEquals(1, loader.getLookups("META-INF/services/" + SERVICE));
+   }
+
+   @Test
+   public void testClearCache() throws IOException
+   {
+      assertNull(ServiceLoader.loadService(MISSING_SERVICE, null, loader));
+      File servicesFile = new File(classesDir, "META-INF/services/" + MISSING_SERVICE);
+      Files.write(servicesFile.toPath(), "java.util.ArrayList\n".getBytes(StandardCharsets.UTF_8));
+      assertNull(ServiceLoader.loadService(MISSING_SERVICE, null, loader));
+      assertEquals(1, loader.getLookups("META-INF/services/" + MISSING_SERVICE));
+
+      ServiceLoader.clearCache(loader);
+      assertTrue(ServiceLoader.loadService(MISSING_SERVICE, null, loader) instanceof ArrayList);
+      assertEquals(2, loader.getLookups("META-INF/services/" + MISSING_SERVICE));
+   }
+
+   @Test
+   public void testServiceIndex() throws IOException
+   {
+      String oddService = "org.jboss.ws.api.util.test.Odd=Service:with spaces#and!marks";
+      File servicesFile = new File(classesDir, "META-INF/services/" + oddService);
+      Files.write(servicesFile.toPath(), "  java.util.ArrayList \t\r\n".getBytes(StandardCharsets.UTF_8));
+      assertTrue(ServiceLoader.loadService(oddService, null, loader) instanceof ArrayList);
+
+      assertEquals(2, ServiceIndexGenerator.generate(classesDir));
+      try (CountingClassLoader indexedLoader = new CountingClassLoader(classesDir))
+      {
+         assertTrue(ServiceLoader.loadService(oddService, null, indexedLoader) instanceof ArrayList);
+         assertTrue(ServiceLoader.loadService(SERVICE, null, indexedLoader) instanceof ArrayList);
+         assertEquals(0, indexedLoader.getLookups("META-INF/services/" + oddService));
+         assertEquals(0, indexedLoader.getLookups("META-INF/services/" + SERVICE));
+         ServiceLoader.clearCache(indexedLoader);
+      }
+   }
+
+   @Test
+   public void testServiceIndexEscaping() throws IOException
+   {
+      String[] strings = { " leading space", "back\\slash", "a=b:c", "#comment", "!comment", "tab\tnew\nline\rfeed\f", "caf\u00e9" };
+      StringBuilder sb = new StringBuilder();
+      for (String s : strings)
+      {
+         sb.append(ServiceIndexGenerator.escape(s, true)).append('=').append(ServiceIndexGenerator.escape(s, false)).append('\n');
+      }
+      Properties properties = new Properties();
+      properties.load(new StringReader(sb.toString()));
+      assertEquals(strings.length, properties.size());
+      for (String s : strings)
+      {
+         assertEquals(s, properties.getProperty(s));
+      }
+   }
+
+   @Test
+   public void testPrewarm()
+   {
+      List<ServiceLoader.PrewarmResult> results = ServiceLoader.prewarm(Arrays.asList(SERVICE, MISSING_SERVICE), loader);
+      assertEquals(2, results.size());
+      assertEquals(SERVICE, results.get(0).getPropertyName());
+      assertTrue(results.get(0).isResolved());
+      assertNull(results.get(0).getFailure());
+      assertEquals(MISSING_SERVICE, results.get(1).getPropertyName());
+      assertFalse(results.get(1).isResolved());
+      assertNull(results.get(1).getFailure());
+      assertEquals(1, loader.getLookups("META-INF/services/" + SERVICE));
+      assertTrue(ServiceLoader.loadService(SERVICE, null, loader) instanceof ArrayList);
+      assertEquals(1, loader.getLookups("META-INF/services/" + SERVICE));
+   }
+
+   @Test
+   public void testConcurrentLookups() throws Exception
+   {
+      for (int threads = 1; threads <= 64; threads *= 2)
+      {
+         try (final CountingClassLoader threadsLoader = new CountingClassLoader(classesDir))
+         {
+            final CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int t = 0; t < threads; t++)
+            {
+               tasks.add(new Callable<Void>()
+               {
+                  public Void call() throws Exception
+                  {
+                     barrier.await(10, TimeUnit.SECONDS);
+                     for (int i = 0; i < 200; i++)
+                     {
+                        assertTrue(ServiceLoader.loadService(SERVICE, null, threadsLoader) instanceof ArrayList);
+                        assertNull(ServiceLoader.loadService(MISSING_SERVICE, null, threadsLoader));
+                        assertTrue(ServiceLoader.loadService(MISSING_SERVICE, "java.util.LinkedList", threadsLoader) instanceof java.util.LinkedList);
+                     }
+                     return null;
+                  }
+               });
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try
+            {
+               for (Future<Void> future : executor.invokeAll(tasks))
+               {
+                  future.get();
+               }
+            }
+            finally
+            {
+               executor.shutdown();
+            }
+            // racing first lookups can each reach the classloader, later ones are all served by the cache
+            assertTrue(threadsLoader.getLookups(ServiceLoader.SERVICE_INDEX) <= threads);
+            assertTrue(threadsLoader.getLookups("META-INF/services/" + SERVICE) <= threads);
+            assertTrue(threadsLoader.getLookups("META-INF/services/" + MISSING_SERVICE) <= threads);
+            ServiceLoader.clearCache(threadsLoader);
+         }
+      }
+   }
+
+   @Test
+   public void testLookupFromClassLoaderReadingIndexes() throws IOException
+   {
+      final AtomicBoolean reentered = new AtomicBoolean();
+      try (CountingClassLoader reentrantLoader = new CountingClassLoader(classesDir)
+      {
+         @Override
+         public Enumeration<URL> getResources(String name) throws IOException
+         {
+            // a classloader using the service loader itself while the indexes are being read
+            if (ServiceLoader.SERVICE_INDEX.equals(name) && reentered.compareAndSet(false, true))
+               assertTrue(ServiceLoader.loadService(SERVICE, null, this) instanceof ArrayList);
+            return super.getResources(name);
+         }
+      })
+      {
+         assertTrue(ServiceLoader.loadService(SERVICE, null, reentrantLoader) instanceof ArrayList);
+         assertTrue(reentered.get());
+         assertEquals(2, reentrantLoader.getLookups(ServiceLoader.SERVICE_INDEX));
+         ServiceLoader.clearCache(reentrantLoader);
+      }
+   }
+
+   @Test
+   public void testStatisticsRegistration() throws Exception
+   {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = ServiceLoader.registerStatistics();
+      try
+      {
+         assertTrue(name.toString().startsWith("jboss.ws:"));
+         assertTrue(name.getKeyProperty("loader") != null);
+         assertTrue(server.isRegistered(name));
+         assertEquals(name, ServiceLoader.registerStatistics());
+
+         assertTrue(ServiceLoader.loadService(SERVICE, null, loader) instanceof ArrayList);
+         TabularData statistics = (TabularData) server.getAttribute(name, "ServiceStatistics");
+         assertTrue(statistics.containsKey(new Object[] { SERVICE }));
+      }
+      finally
+      {
+         ServiceLoader.unregisterStatistics();
+      }
+      assertFalse(server.isRegistered(name));
+      ServiceLoader.unregisterStatistics();
+   }
+
+   private static void delete(File file)
+   {
+      File[] children = file.listFiles();
+      if (children != null)
+      {
+         for (File child : children)
+         {
+            delete(child);
+         }
+      }
+      file.delete();
+   }
+
+   /**
+    * A classloader counting the resource lookups by resource name
+    */
+   private static class CountingClassLoader extends URLClassLoader
+   {
+      private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<String, AtomicInteger>();
+
+      CountingClassLoader(File classesDir) throws IOException
+      {
+         super(new URL[] { classesDir.toURI().toURL() }, null);
+      }
+
+      int getLookups(String name)
+      {
+         AtomicInteger count = lookups.get(name);
+         return count != null ? count.get() : 0;
+      }
+
+      @Override
+      public URL getResource(String name)
+      {
+         lookups.computeIfAbsent(name, n -> new AtomicInteger()).incrementAndGet();
+         return super.getResource(name);
+      }
+
+      @Override
+      public Enumeration<URL> getResources(String name) throws IOException
+      {
+         lookups.computeIfAbsent(name, n -> new AtomicInteger()).incrementAndGet();
+         return super.getResources(name);
+      }
+   }
+}
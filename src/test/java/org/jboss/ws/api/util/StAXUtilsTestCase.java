@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Tests of {@link StAXUtils}
+ */
+public class StAXUtilsTestCase
+{
+   private static final String S = "http://schemas.xmlsoap.org/soap/envelope/";
+   private static final String XML = "<s:Envelope xmlns:s='" + S + "' a='1'><s:Header><h>x</h></s:Header>"
+         + "<s:Body b='2'><p:op xmlns:p='urn:p'><arg>v</arg></p:op></s:Body></s:Envelope>";
+   private static final QName ENVELOPE = new QName(S, "Envelope");
+   private static final QName BODY = new QName(S, "Body");
+
+   @Test
+   public void testPath() throws Exception
+   {
+      XMLStreamReader reader = newReader();
+      assertTrue(StAXUtils.path(reader, ENVELOPE, BODY, new QName("urn:p", "op"), new QName("arg")));
+      assertEquals("arg", reader.getLocalName());
+      assertFalse(StAXUtils.path(newReader(), ENVELOPE, new QName(S, "Missing")));
+      assertFalse(StAXUtils.path(newReader(), BODY));
+   }
+
+   @Test
+   public void testEmptyPath() throws Exception
+   {
+      XMLStreamReader reader = newReader();
+      assertTrue(StAXUtils.path(reader));
+      assertEquals(ENVELOPE, reader.getName());
+      assertTrue(StAXUtils.path(reader));
+      assertEquals(ENVELOPE, reader.getName());
+
+      assertEquals(new QName(S, "Header"), StAXUtils.getFirstChildElementName(newReader()));
+      assertEquals("1", StAXUtils.getAttributeValue(newReader(), new QName("a")));
+      reader = newReader();
+      assertTrue(StAXUtils.path(reader, ENVELOPE, BODY));
+      assertEquals("2", StAXUtils.getAttributeValue(reader, new QName("b")));
+      assertEquals(new QName("urn:p", "op"), StAXUtils.getFirstChildElementName(reader));
+
+      Element envelope = StAXUtils.getElement(newReader(), DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument());
+      assertEquals("Envelope", envelope.getLocalName());
+      assertEquals("xv", envelope.getTextContent());
+      assertNull(StAXUtils.getFirstChildElementName(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader("<r/>"))));
+   }
+
+   private static XMLStreamReader newReader() throws XMLStreamException
+   {
+      return XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML));
+   }
+}
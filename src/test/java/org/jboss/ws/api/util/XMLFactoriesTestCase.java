@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jboss.ws.api.util;
+
+import static org.junit.Assert.assertSame;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link XMLFactories}
+ */
+public class XMLFactoriesTestCase
+{
+   @Test
+   public void testConcurrentFirstLookups() throws Exception
+   {
+      final int threads = 16;
+      try (final URLClassLoader loader = new URLClassLoader(new URL[0], null))
+      {
+         final CyclicBarrier barrier = new CyclicBarrier(threads);
+         List<Callable<XMLFactories>> tasks = new ArrayList<Callable<XMLFactories>>();
+         for (int i = 0; i < threads; i++)
+         {
+            tasks.add(new Callable<XMLFactories>()
+            {
+               public XMLFactories call() throws Exception
+               {
+                  barrier.await(10, TimeUnit.SECONDS);
+                  return XMLFactories.getInstance(loader);
+               }
+            });
+         }
+         ExecutorService executor = Executors.newFixedThreadPool(threads);
+         try
+         {
+            List<Future<XMLFactories>> results = executor.invokeAll(tasks);
+            XMLFactories factories = results.get(0).get();
+            for (Future<XMLFactories> result : results)
+            {
+               assertSame(factories, result.get());
+            }
+            assertSame(factories, XMLFactories.getInstance(loader));
+         }
+         finally
+         {
+            executor.shutdown();
+         }
+      }
+   }
+}